@@ -0,0 +1,130 @@
+package com.example.newmoodle.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    @Value("${feedback.jobs.worker-threads:4}")
+    private int feedbackWorkerThreads;
+
+    @Value("${storage.upload.parallelism:4}")
+    private int uploadParallelism;
+
+    @Value("${ingestion.threads:2}")
+    private int ingestionThreads;
+
+    @Value("${ingestion.queue-capacity:50}")
+    private int ingestionQueueCapacity;
+
+    @Value("${feedback.drafts.max-concurrency:1}")
+    private int draftConcurrency;
+
+    @Value("${feedback.drafts.queue-capacity:200}")
+    private int draftQueueCapacity;
+
+    /**
+     * Default executor for {@code @Async} methods (e-mail sending). Declared explicitly because the
+     * dedicated executors below make Spring Boot back off from its own application executor.
+     */
+    @Bean(name = "taskExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor taskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("async-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs claimed feedback jobs. The pool is sized exactly to the worker count and the worker only
+     * claims as many jobs as there are idle threads, so claimed rows never sit in a local queue.
+     */
+    @Bean(name = "feedbackJobExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor feedbackJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(feedbackWorkerThreads);
+        executor.setMaxPoolSize(feedbackWorkerThreads);
+        executor.setQueueCapacity(feedbackWorkerThreads);
+        executor.setThreadNamePrefix("feedback-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Sends multipart-upload parts. Shared by all uploads so concurrent large submissions cannot
+     * open an unbounded number of connections; a full queue makes the request thread send the part itself.
+     */
+    @Bean(name = "uploadExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor uploadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(uploadParallelism);
+        executor.setMaxPoolSize(uploadParallelism);
+        executor.setQueueCapacity(uploadParallelism * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("upload-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Extracts the text of new uploads after commit. Deliberately small and bounded: when the queue
+     * is full, tasks are rejected (never run on the request thread) and extraction happens on demand.
+     */
+    @Bean(name = "ingestionExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor ingestionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ingestionThreads);
+        executor.setMaxPoolSize(ingestionThreads);
+        executor.setQueueCapacity(ingestionQueueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("ingestion-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Drains the object deletion outbox after deleting transactions commit. One thread, one queue
+     * slot: a single queued drain handles every deletion committed before it runs, so further
+     * triggers are rejected and dropped instead of piling up.
+     */
+    @Bean(name = "deletionExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor deletionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("object-deletion-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs speculative feedback drafts on low-priority threads. Full queue rejects: a dropped draft
+     * only means the teacher's request generates the feedback itself.
+     */
+    @Bean(name = "draftExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor draftExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(draftConcurrency);
+        executor.setMaxPoolSize(draftConcurrency);
+        executor.setQueueCapacity(draftQueueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.setThreadNamePrefix("feedback-draft-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.newmoodle.config;
+
+import com.example.newmoodle.service.DocumentTextExtractor;
+import com.example.newmoodle.service.DocxTextExtractor;
+import com.example.newmoodle.service.PdfTextExtractor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class ExtractionConfig {
+
+    @Value("${extraction.pdf.parallelism:0}")
+    private int pdfParallelism;
+
+    @Value("${extraction.pdf.max-pages:150}")
+    private int pdfMaxPages;
+
+    @Value("${extraction.pdf.max-chars:400000}")
+    private int pdfMaxChars;
+
+    @Value("${extraction.pdf.pages-per-task:16}")
+    private int pdfPagesPerTask;
+
+    @Value("${extraction.pdf.memory-mapped:false}")
+    private boolean pdfMemoryMapped;
+
+    @Value("${extraction.docx.max-chars:400000}")
+    private int docxMaxChars;
+
+    /**
+     * Dedicated pool for page-range extraction, kept separate from the common pool so long PDFs
+     * cannot starve parallel streams elsewhere. 0 means one thread per available processor.
+     */
+    @Bean(name = "extractionPool", destroyMethod = "shutdown")
+    public ForkJoinPool extractionPool() {
+        int parallelism = pdfParallelism > 0 ? pdfParallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism);
+    }
+
+    @Bean
+    public PdfTextExtractor pdfTextExtractor(ForkJoinPool extractionPool) {
+        return new PdfTextExtractor(extractionPool, pdfMaxPages, pdfMaxChars, pdfPagesPerTask, pdfMemoryMapped);
+    }
+
+    @Bean
+    public DocxTextExtractor docxTextExtractor() {
+        return new DocxTextExtractor(docxMaxChars);
+    }
+
+    @Bean
+    public DocumentTextExtractor documentTextExtractor(PdfTextExtractor pdfTextExtractor, DocxTextExtractor docxTextExtractor) {
+        return new DocumentTextExtractor(pdfTextExtractor, docxTextExtractor, Math.max(pdfMaxChars, docxMaxChars));
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.newmoodle.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
@@ -13,6 +14,7 @@ import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import java.net.URI;
 
 @Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "r2", matchIfMissing = true)
 public class R2Config {
 
     @Value("${aws.s3.access-key-id}")
@@ -1,6 +1,7 @@
 package com.example.newmoodle.config;
 
 import com.example.newmoodle.service.UserService;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -29,7 +30,13 @@ public class SecurityConfig {
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable).cors(withDefaults())
-                .authorizeHttpRequests(request -> request.requestMatchers(
+                .authorizeHttpRequests(request -> request
+                        // The JWT filter runs once per request, so async (SSE completion) and error
+                        // dispatches carry no authentication; the original request was authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                        // Local storage URLs carry their own signed token, like presigned bucket URLs
+                        .requestMatchers("/api/v1/storage/local/**").permitAll()
+                        .requestMatchers(
                                 "/api/v1/auth/**",
                                 "/error",
                                 "/api/v1/user/confirmemail",
@@ -1,22 +1,31 @@
 package com.example.newmoodle.controller;
 import com.example.newmoodle.model.Assignment;
+import com.example.newmoodle.model.Language;
 import com.example.newmoodle.model.User;
 import com.example.newmoodle.model.request.AssignmentDto;
 import com.example.newmoodle.service.AssignmentService;
 import com.example.newmoodle.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -29,6 +38,10 @@ public class AssignmentController {
 
     private final AssignmentService assignmentService;
     private final UserService userService;
+    private final FileStreamWriter fileStreamWriter;
+
+    @Value("${storage.download.redirect:false}")
+    private boolean redirectDownloads;
 
 
     @PostMapping(value = "/{sectionId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -37,7 +50,9 @@ public class AssignmentController {
             @RequestParam(required = false) MultipartFile file, // required = false позволяет не передавать файл
             @RequestParam String title,
             @RequestParam String description,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dueDate
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dueDate,
+            @RequestParam(defaultValue = "false") boolean pregenerateDrafts,
+            @RequestParam(required = false) Language draftLanguage
     ) {
         try {
             AssignmentDto assignmentDto = AssignmentDto.builder()
@@ -45,6 +60,8 @@ public class AssignmentController {
                     .description(description)
                     .dueDate(dueDate)
                     .file(file)
+                    .pregenerateDrafts(pregenerateDrafts)
+                    .draftLanguage(draftLanguage)
                     .build();
 
             User currentUser = userService.getAuthenticatedUser(); // Получаем текущего пользователя
@@ -74,21 +91,55 @@ public class AssignmentController {
     @GetMapping("/{assignmentId}/download") // Новый эндпоинт для скачивания
     public ResponseEntity<Resource> downloadAssignmentFile(@PathVariable Long assignmentId) {
         try {
+            if (redirectDownloads) {
+                // Bytes go straight from the bucket to the client instead of through this node
+                URI url = assignmentService.getDownloadUrl(assignmentId);
+                if (url == null) {
+                    return ResponseEntity.notFound().build();
+                }
+                return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                        .location(url)
+                        .cacheControl(CacheControl.noStore())
+                        .build();
+            }
+
             Resource file = assignmentService.downloadFile(assignmentId);
 
             if (file == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            String contentType = "application/octet-stream";
+            String contentType = assignmentService.getFileContentType(assignmentId);
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFilename() + "\"")
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(file.getFilename(), StandardCharsets.UTF_8).build().toString())
                     .body(file);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
+    /**
+     * Streams the assignment file through this node, with Range and conditional request support.
+     */
+    @GetMapping("/{assignmentId}/stream")
+    public void streamAssignmentFile(@PathVariable Long assignmentId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Assignment assignment;
+        try {
+            assignment = assignmentService.getAssignmentById(assignmentId);
+        } catch (NoSuchElementException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (assignment.getFilePath() == null || assignment.getFilePath().isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        fileStreamWriter.write(assignment.getFilePath(), assignment.getFileName(), request, response);
+    }
+
     @GetMapping("/my")
     public ResponseEntity<?> getMyAssignments() {
         try {
@@ -101,6 +152,24 @@ public class AssignmentController {
         }
     }
 
+    /**
+     * Opts the assignment in or out of background feedback drafts for new submissions.
+     */
+    @PutMapping("/{assignmentId}/drafts")
+    public ResponseEntity<?> updateDraftSettings(@PathVariable Long assignmentId,
+                                                 @RequestParam boolean pregenerateDrafts,
+                                                 @RequestParam(required = false) Language draftLanguage) {
+        try {
+            User currentUser = userService.getAuthenticatedUser();
+            return ResponseEntity.ok(assignmentService.mapToAssignmentDto(
+                    assignmentService.updateDraftSettings(assignmentId, currentUser, pregenerateDrafts, draftLanguage)));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteAssignment(@PathVariable Long id) {
         try {
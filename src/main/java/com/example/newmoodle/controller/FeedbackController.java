@@ -1,17 +1,27 @@
 package com.example.newmoodle.controller;
 
-import com.example.newmoodle.dto.FeedbackDto; // Import DTO
+import com.example.newmoodle.dto.FeedbackBatchDto;
+import com.example.newmoodle.dto.FeedbackJobDto;
+import com.example.newmoodle.model.FeedbackJob;
+import com.example.newmoodle.model.FeedbackJobStatus;
 import com.example.newmoodle.model.Language;
 import com.example.newmoodle.model.User;
-import com.example.newmoodle.service.FeedbackService;
+import com.example.newmoodle.service.FeedbackBatchService;
+import com.example.newmoodle.service.FeedbackJobService;
 import com.example.newmoodle.service.UserService; // Keep for getting authenticated user
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException; // For specific exception handling
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api/v1/feedback")
@@ -19,9 +29,16 @@ import org.springframework.web.bind.annotation.*;
 public class FeedbackController {
 
     private static final Logger logger = LoggerFactory.getLogger(FeedbackController.class);
-    private final FeedbackService feedbackService;
+    private final FeedbackJobService feedbackJobService;
+    private final FeedbackBatchService feedbackBatchService;
     private final UserService userService; // To get the currently logged-in teacher
+    private final FeedbackStreamer feedbackStreamer;
 
+    /**
+     * Queues AI feedback generation and answers 202 right away.
+     * Poll the returned job (Location header) for status and the resulting feedback.
+     * Answers 200 with the completed job when a pre-generated draft could be used.
+     */
     @PostMapping("/{submissionId}/")
     public ResponseEntity<?> generateFeedback(@PathVariable Long submissionId, @RequestParam Language language) {
         try {
@@ -31,21 +48,77 @@ public class FeedbackController {
             //    return ResponseEntity.status(HttpStatus.FORBIDDEN).body("User is not authorized or not found.");
             // }
 
-            FeedbackDto feedbackDto = feedbackService.generateFeedbackAndGetDto(submissionId, currentTeacher, language);
-            return ResponseEntity.ok(feedbackDto);
+            FeedbackJob job = feedbackJobService.enqueue(submissionId, currentTeacher, language);
+            if (job.getStatus() == FeedbackJobStatus.COMPLETED) {
+                return ResponseEntity.ok(feedbackJobService.mapToFeedbackJobDto(job));
+            }
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/v1/feedback/jobs/" + job.getId()))
+                    .body(feedbackJobService.mapToFeedbackJobDto(job));
 
         } catch (UsernameNotFoundException e) {
             // Catch specific exception from userService if user is not found
             logger.warn("Authentication error during feedback generation: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Authentication failed: " + e.getMessage());
         } catch (IllegalArgumentException e) {
-            // Handle known "bad request" errors like submission not found, no file, etc.
-            logger.warn("Bad request generating feedback for submission {}: {}", submissionId, e.getMessage());
+            // Handle known "bad request" errors like submission not found
+            logger.warn("Bad request queuing feedback for submission {}: {}", submissionId, e.getMessage());
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             // Catch all other unexpected errors
-            logger.error("Internal server error generating feedback for submission id {}", submissionId, e);
+            logger.error("Internal server error queuing feedback for submission id {}", submissionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An internal error occurred.");
+        }
+    }
+
+    /**
+     * Generates feedback while the client watches: text arrives as {@code delta} events and the
+     * stored feedback as a final {@code done} event. Closing the connection aborts the generation.
+     */
+    @PostMapping(value = "/{submissionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFeedback(@PathVariable Long submissionId, @RequestParam Language language) {
+        User currentTeacher = userService.getAuthenticatedUser();
+        return feedbackStreamer.stream(submissionId, currentTeacher, language);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getFeedbackJob(@PathVariable Long jobId) {
+        try {
+            FeedbackJobDto job = feedbackJobService.getJobDto(jobId);
+            return ResponseEntity.ok(job);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Generates feedback for every PENDING submission of the assignment in the background.
+     * Poll the returned batch (Location header) for progress.
+     */
+    @PostMapping("/assignment/{assignmentId}/batch")
+    public ResponseEntity<?> generateFeedbackForAssignment(@PathVariable Long assignmentId, @RequestParam Language language) {
+        try {
+            User currentTeacher = userService.getAuthenticatedUser();
+            FeedbackBatchDto batch = feedbackBatchService.startBatch(assignmentId, currentTeacher, language);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/v1/feedback/batches/" + batch.getId()))
+                    .body(batch);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Internal server error starting feedback batch for assignment id {}", assignmentId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An internal error occurred.");
         }
     }
-}
\ No newline at end of file
+
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<?> getFeedbackBatch(@PathVariable String batchId) {
+        try {
+            return ResponseEntity.ok(feedbackBatchService.getBatch(batchId));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.newmoodle.controller;
+
+import com.example.newmoodle.model.Feedback;
+import com.example.newmoodle.model.Language;
+import com.example.newmoodle.model.User;
+import com.example.newmoodle.service.FeedbackService;
+import com.example.newmoodle.service.StreamCancellation;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams feedback generation to the client as Server-Sent Events: one {@code delta} event per
+ * chunk of text, then a {@code done} event carrying the stored feedback, or an {@code error} event.
+ * When the client disconnects or the emitter times out, the upstream LLM call is aborted and
+ * nothing is stored.
+ */
+@Component
+@RequiredArgsConstructor
+public class FeedbackStreamer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedbackStreamer.class);
+
+    private final FeedbackService feedbackService;
+
+    @Value("${feedback.stream.timeout-seconds:180}")
+    private long timeoutSeconds;
+
+    public SseEmitter stream(Long submissionId, User teacher, Language language) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(timeoutSeconds));
+        StreamCancellation cancellation = new StreamCancellation();
+        emitter.onCompletion(cancellation::cancel);
+        emitter.onTimeout(cancellation::cancel);
+        emitter.onError(e -> cancellation.cancel());
+
+        // Virtual thread: it spends nearly all its time waiting on the LLM and the client socket
+        Thread.ofVirtual().name("feedback-stream-" + submissionId).start(() -> {
+            try {
+                Feedback feedback = feedbackService.streamFeedback(submissionId, teacher, language,
+                        delta -> send(emitter, cancellation, SseEmitter.event().name("delta").data(delta)),
+                        cancellation);
+                send(emitter, cancellation, SseEmitter.event().name("done").data(feedbackService.getFeedbackDto(feedback.getId())));
+                emitter.complete();
+            } catch (CancellationException e) {
+                logger.info("Feedback stream for submission {} was cancelled", submissionId);
+            } catch (Exception e) {
+                logger.error("Feedback stream for submission {} failed", submissionId, e);
+                try {
+                    emitter.send(SseEmitter.event().name("error").data(e instanceof IllegalArgumentException
+                            ? e.getMessage() : "An internal error occurred."));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException sendFailure) {
+                    emitter.completeWithError(sendFailure);
+                }
+            }
+        });
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, StreamCancellation cancellation, SseEmitter.SseEventBuilder event) {
+        if (cancellation.isCancelled()) {
+            throw new CancellationException("Client went away");
+        }
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // The client disconnected; stop paying for tokens nobody will read
+            cancellation.cancel();
+            throw new CancellationException("Client went away");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.newmoodle.controller;
+
+import com.example.newmoodle.service.FileService;
+import com.example.newmoodle.service.storage.ObjectDownload;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Proxies a stored object to the client for deployments where the bucket is not reachable from
+ * browsers. Range and conditional headers are forwarded, so PDF viewers can seek and repeat
+ * visits get a 304 without any body transfer.
+ */
+@Component
+@RequiredArgsConstructor
+public class FileStreamWriter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final FileService fileService;
+
+    /**
+     * @param fileName the name the referencing upload came with, sent in Content-Disposition.
+     */
+    public void write(String key, String fileName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        write(key, ContentDisposition.inline().filename(fileService.getDisplayFileName(key, fileName), StandardCharsets.UTF_8).build(),
+                request, response);
+    }
+
+    public void write(String key, ContentDisposition disposition, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        try (ObjectDownload download = fileService.downloadFileAsStream(key,
+                request.getHeader(HttpHeaders.RANGE),
+                request.getHeader(HttpHeaders.IF_NONE_MATCH),
+                ifModifiedSince > 0 ? Instant.ofEpochMilli(ifModifiedSince) : null)) {
+            if (download == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            response.setStatus(download.getStatus());
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            // Let browsers keep a copy but revalidate it with If-None-Match on every use
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+            if (download.getETag() != null) {
+                response.setHeader(HttpHeaders.ETAG, download.getETag());
+            }
+            if (download.getLastModified() != null) {
+                response.setDateHeader(HttpHeaders.LAST_MODIFIED, download.getLastModified().toEpochMilli());
+            }
+            if (!download.hasBody()) {
+                return; // 304 or 416
+            }
+
+            response.setContentType(download.getContentType() != null ? download.getContentType() : fileService.getContentType(key));
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition.toString());
+            if (download.getContentLength() != null) {
+                response.setContentLengthLong(download.getContentLength());
+            }
+            if (download.getContentRange() != null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, download.getContentRange());
+            }
+            if (download.getFile() != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                // Local disk: let Tomcat send the file region with sendfile(2) after this method returns
+                request.setAttribute(SENDFILE_FILENAME, download.getFile().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, download.getPosition());
+                request.setAttribute(SENDFILE_END, download.getPosition() + download.getContentLength());
+                return;
+            }
+            download.transferTo(response.getOutputStream());
+        }
+    }
+}
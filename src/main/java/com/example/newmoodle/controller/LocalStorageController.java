@@ -0,0 +1,70 @@
+package com.example.newmoodle.controller;
+
+import com.example.newmoodle.service.storage.LocalDiskStorageBackend;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the signed URLs handed out by {@link LocalDiskStorageBackend}, standing in for a bucket's
+ * presigned GET/PUT. The token itself is the authorization, so these paths bypass JWT auth.
+ */
+@RestController
+@RequestMapping("/api/v1/storage/local")
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+@RequiredArgsConstructor
+public class LocalStorageController {
+
+    private final LocalDiskStorageBackend storageBackend;
+    private final FileStreamWriter fileStreamWriter;
+
+    @GetMapping("/{token}")
+    public void download(@PathVariable String token, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        LocalDiskStorageBackend.Token verified;
+        try {
+            verified = storageBackend.verify(token);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        if (verified.mode() != LocalDiskStorageBackend.TokenMode.GET) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(verified.fileName() != null ? verified.fileName() : verified.key(), StandardCharsets.UTF_8)
+                .build();
+        fileStreamWriter.write(verified.key(), disposition, request, response);
+    }
+
+    @PutMapping("/{token}")
+    public ResponseEntity<?> upload(@PathVariable String token, HttpServletRequest request) throws IOException {
+        LocalDiskStorageBackend.Token verified;
+        try {
+            verified = storageBackend.verify(token);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+        if (verified.mode() != LocalDiskStorageBackend.TokenMode.PUT) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        // Same contract as a presigned PUT: type and length must be exactly what was signed
+        if (!verified.contentType().equalsIgnoreCase(request.getContentType())
+                || request.getContentLengthLong() != verified.contentLength()) {
+            return ResponseEntity.badRequest().body("Content-Type and Content-Length must match the signed upload");
+        }
+        try (InputStream body = request.getInputStream()) {
+            String eTag = storageBackend.put(verified.key(), body, verified.contentType());
+            return ResponseEntity.ok().eTag(eTag).build();
+        }
+    }
+}
@@ -3,19 +3,28 @@ package com.example.newmoodle.controller;
 import com.example.newmoodle.dto.SubmissionDto;
 import com.example.newmoodle.model.Submission;
 import com.example.newmoodle.model.User;
+import com.example.newmoodle.model.request.UploadUrlRequest;
+import com.example.newmoodle.service.FileReference;
+import com.example.newmoodle.service.SubmissionExportService;
 import com.example.newmoodle.service.SubmissionService;
 import com.example.newmoodle.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.AccessDeniedException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api/v1/submission")
@@ -24,17 +33,70 @@ public class SubmissionController {
 
     private final SubmissionService submissionService;
     private final UserService userService;
+    private final FileStreamWriter fileStreamWriter;
+    private final SubmissionExportService submissionExportService;
 
     @GetMapping("/{id}")
     public ResponseEntity<?> getSubmission(@PathVariable Long id) {
         return ResponseEntity.ok(submissionService.mapToSubmissionDto(submissionService.getSubmissionById(id)));
     }
 
+    /**
+     * Streams the submitted file to its student or the assignment's teacher, with Range and
+     * conditional request support.
+     */
+    @GetMapping("/{id}/stream")
+    public void streamSubmissionFile(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        FileReference file;
+        try {
+            file = submissionService.getSubmissionFile(id, userService.getAuthenticatedUser());
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        } catch (AccessDeniedException e) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        fileStreamWriter.write(file.key(), file.fileName(), request, response);
+    }
+
     @PostMapping(path = "/{sectionId}/{assignmentId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> submitAssignment(@PathVariable Long sectionId, @PathVariable Long assignmentId, @RequestParam("file") MultipartFile file) throws IOException {
         return ResponseEntity.ok(submissionService.createSubmission(userService.getAuthenticatedUser(), file, assignmentId, sectionId ));
     }
 
+    /**
+     * Direct upload, step 1: returns a presigned PUT URL the client uploads the file to.
+     */
+    @PostMapping(path = "/{sectionId}/{assignmentId}/upload-url", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createUploadUrl(@PathVariable Long sectionId, @PathVariable Long assignmentId, @Valid @RequestBody UploadUrlRequest request) {
+        try {
+            return ResponseEntity.ok(submissionService.createUploadUrl(userService.getAuthenticatedUser(), assignmentId, sectionId, request));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Direct upload, step 2: verifies the uploaded object and creates the submission.
+     */
+    @PostMapping(path = "/{sectionId}/{assignmentId}/finalize", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> finalizeUpload(@PathVariable Long sectionId, @PathVariable Long assignmentId, @RequestParam("key") String key) throws IOException {
+        try {
+            return ResponseEntity.ok(submissionService.finalizeDirectUpload(userService.getAuthenticatedUser(), key, assignmentId, sectionId));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteSubmission(@PathVariable Long id) throws IOException {
         submissionService.deleteSubmission(id, userService.getAuthenticatedUser());
@@ -51,6 +113,28 @@ public class SubmissionController {
         }
     }
 
+    /**
+     * Streams a ZIP with every submission of the assignment, one entry per student.
+     */
+    @GetMapping("/assignments/{assignmentId}/submissions/zip")
+    public void downloadSubmissionsZip(@PathVariable Long assignmentId, HttpServletResponse response) throws IOException {
+        List<SubmissionExportService.ExportEntry> entries;
+        try {
+            entries = submissionExportService.prepareExport(assignmentId, userService.getAuthenticatedUser());
+        } catch (NoSuchElementException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        } catch (AccessDeniedException e) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(submissionExportService.archiveName(assignmentId), StandardCharsets.UTF_8)
+                .build().toString());
+        submissionExportService.writeZip(entries, response.getOutputStream());
+    }
+
     @PatchMapping("/submissions/{submissionId}/grade")
     public ResponseEntity<?> gradeSubmission(
             @PathVariable Long submissionId,
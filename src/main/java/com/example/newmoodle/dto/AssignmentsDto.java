@@ -1,5 +1,6 @@
 package com.example.newmoodle.dto; // Или другой подходящий пакет для DTO
 
+import com.example.newmoodle.model.Language;
 import com.example.newmoodle.model.request.SectionDto;
 import com.example.newmoodle.model.request.UserSummaryDto; // Используем ваш UserSummaryDto
 import com.fasterxml.jackson.annotation.JsonFormat;
@@ -24,6 +25,9 @@ public class AssignmentsDto {
     private LocalDateTime dueDate;
 
     private String filePath; // Путь к файлу или URL (возможно,需要 FileService для генерации URL)
+    private FileInfoDto file; // Из каталога stored_file, null если файла нет
+    private boolean pregenerateDrafts;
+    private Language draftLanguage;
     private SectionDto section; // Краткая информация о секции
     private UserSummaryDto teacher; // Информация о преподавателе
 }
\ No newline at end of file
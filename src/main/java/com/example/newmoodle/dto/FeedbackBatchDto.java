@@ -0,0 +1,33 @@
+package com.example.newmoodle.dto;
+
+import com.example.newmoodle.model.Language;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FeedbackBatchDto {
+    private String id;
+    private Long assignmentId;
+    private Language language;
+    private boolean finished;
+    private int total;
+    private int succeeded;
+    private int failed;
+    private int inProgress;
+    private Map<Long, String> failures; // submissionId -> error message
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime startedAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime finishedAt;
+}
@@ -1,5 +1,6 @@
 package com.example.newmoodle.dto;
 
+import com.example.newmoodle.model.Language;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,6 +14,8 @@ import lombok.NoArgsConstructor;
 public class FeedbackDto {
     private Long id; // Assuming Feedback entity has an ID
     private String aiGenerated;
+    private Language language;
+    private boolean draft;
     private SubmissionSimpleDto submission; // Nested DTO
     private UserSimpleDto teacher;      // Nested DTO (using updated UserSimpleDto)
     // Optional: Add other relevant fields from Feedback entity
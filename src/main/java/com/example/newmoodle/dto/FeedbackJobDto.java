@@ -0,0 +1,33 @@
+package com.example.newmoodle.dto;
+
+import com.example.newmoodle.model.FeedbackJobStatus;
+import com.example.newmoodle.model.Language;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FeedbackJobDto {
+    private Long id;
+    private Long submissionId;
+    private Language language;
+    private FeedbackJobStatus status;
+    private int attempts;
+    private String error;
+    private FeedbackDto feedback; // Only set once the job is COMPLETED
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,19 @@
+package com.example.newmoodle.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FileInfoDto {
+    private String originalName;
+    private long sizeBytes;
+    private String contentType;
+    private String sha256;
+    private Integer pageCount;
+    private Integer wordCount;
+}
@@ -13,6 +13,7 @@ import lombok.NoArgsConstructor;
 public class SubmissionDto {
     private Long id;
     private String fileUrl;
+    private FileInfoDto file; // Из каталога stored_file, null для старых файлов
     private SubmissionStatus status;
     private Integer grade; // Добавляем оценку
     private UserSimpleDto student; // Используем UserSimpleDto
@@ -0,0 +1,24 @@
+package com.example.newmoodle.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadUrlDto {
+    private String key;
+    private String uploadUrl;
+    private String method;
+    private Map<String, String> headers; // Must be sent exactly as given, they are part of the signature
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime expiresAt;
+}
@@ -48,6 +48,18 @@ public class Assignment {
     @Column(name = "file_path")
     private String filePath;
 
+    // Name the teacher uploaded the file under; the object itself may be shared with other uploads
+    @Column(name = "file_name")
+    private String fileName;
+
+    // Opt-in: generate an unpublished AI feedback draft for every new submission in the background
+    @Column(name = "pregenerate_drafts", columnDefinition = "boolean default false not null")
+    private boolean pregenerateDrafts;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "draft_language")
+    private Language draftLanguage;
+
     @JsonIgnore
     @OneToMany(
             mappedBy = "assignment", // Указывает на поле 'assignment' в сущности Submission
@@ -0,0 +1,34 @@
+package com.example.newmoodle.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persisted copy of the extracted, prompt-ready text of an assignment's attachment.
+ * Only valid while {@code fileKey} still matches {@link Assignment#getFilePath()}.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "assignment_context")
+public class AssignmentContext {
+    @Id
+    @Column(name = "assignment_id")
+    private Long assignmentId;
+
+    @Column(name = "file_key", nullable = false)
+    private String fileKey;
+
+    @Column(name = "content", columnDefinition = "TEXT", nullable = false)
+    private String content;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,43 @@
+package com.example.newmoodle.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Text extracted from a stored object. The ETag pins the row to the exact object bytes,
+ * so an overwritten object is simply a different cache entry.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "extracted_text", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_extracted_text_key_etag", columnNames = {"object_key", "etag"})
+})
+public class ExtractedText {
+    @Id
+    @Column(name = "extracted_text_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "object_key", nullable = false)
+    private String objectKey;
+
+    @Column(name = "etag", nullable = false)
+    private String etag;
+
+    @Column(name = "content", columnDefinition = "TEXT", nullable = false)
+    private String content;
+
+    @Column(name = "char_count", nullable = false)
+    private int charCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -31,4 +31,12 @@ public class Feedback {
 
     @Column(name = "ai_generated",columnDefinition = "TEXT", nullable = false)
     private String  aiGenerated;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "language")
+    private Language language;
+
+    // Generated speculatively after submission; becomes visible once a teacher requests feedback in this language
+    @Column(name = "draft", columnDefinition = "boolean default false not null")
+    private boolean draft;
 }
@@ -0,0 +1,47 @@
+package com.example.newmoodle.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Bulk feedback request for an assignment. The work itself is done by ordinary feedback jobs;
+ * the batch only remembers which jobs it covers, so its progress survives restarts and can be
+ * read on any node. Jobs are shared with other batches and single requests for the same submission.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "feedback_batch", indexes = {
+        @Index(name = "idx_feedback_batch_assignment", columnList = "assignment_id")
+})
+public class FeedbackBatch {
+    @Id
+    @Column(name = "batch_id", length = 36)
+    private String id;
+
+    @Column(name = "assignment_id", nullable = false)
+    private Long assignmentId;
+
+    @Column(name = "teacher_id", nullable = false)
+    private Long teacherId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Language language;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "feedback_batch_job", joinColumns = @JoinColumn(name = "batch_id"))
+    @Column(name = "job_id", nullable = false)
+    private List<Long> jobIds;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+}
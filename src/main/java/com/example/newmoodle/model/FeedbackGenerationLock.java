@@ -0,0 +1,31 @@
+package com.example.newmoodle.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cross-node lease on generating feedback for one submission. A row exists while some node is
+ * calling the LLM for the submission; a node that dies leaves a row that expires at {@code lockedUntil}.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "feedback_generation_lock")
+public class FeedbackGenerationLock {
+    @Id
+    @Column(name = "submission_id")
+    private Long submissionId;
+
+    @Column(name = "locked_by", nullable = false)
+    private String lockedBy;
+
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+}
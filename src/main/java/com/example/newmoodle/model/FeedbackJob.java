@@ -0,0 +1,70 @@
+package com.example.newmoodle.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Durable unit of work for AI feedback generation.
+ * Rows are claimed by {@code FeedbackJobWorker} instances with SELECT ... FOR UPDATE SKIP LOCKED,
+ * so any number of nodes can drain the same table. Submission, teacher and feedback are stored as
+ * plain ids to keep the queue independent of the submission/feedback cascades.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "feedback_job", indexes = {
+        @Index(name = "idx_feedback_job_status_created", columnList = "status, created_at"),
+        @Index(name = "idx_feedback_job_submission", columnList = "submission_id")
+})
+public class FeedbackJob {
+    @Id
+    @Column(name = "job_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "submission_id", nullable = false)
+    private Long submissionId;
+
+    @Column(name = "teacher_id", nullable = false)
+    private Long teacherId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Language language;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private FeedbackJobStatus status;
+
+    @Column(name = "feedback_id")
+    private Long feedbackId;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "locked_by")
+    private String lockedBy;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    // A re-queued job is not claimed before this (the provider's Retry-After); null means right away
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
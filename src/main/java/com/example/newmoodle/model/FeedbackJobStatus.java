@@ -0,0 +1,8 @@
+package com.example.newmoodle.model;
+
+public enum FeedbackJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
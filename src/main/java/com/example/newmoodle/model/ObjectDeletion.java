@@ -0,0 +1,44 @@
+package com.example.newmoodle.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox row for an object that must be removed from the bucket. Rows are written in the same
+ * transaction as the database delete and drained after commit, so a rolled-back delete never
+ * loses a file and the request never waits on the bucket.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "object_deletion_outbox", indexes = {
+        @Index(name = "idx_object_deletion_next_attempt", columnList = "next_attempt_at")
+})
+public class ObjectDeletion {
+    @Id
+    @Column(name = "object_deletion_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "object_key", nullable = false)
+    private String objectKey;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
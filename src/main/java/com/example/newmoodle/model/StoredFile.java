@@ -0,0 +1,47 @@
+package com.example.newmoodle.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Catalog entry for a stored object, written when it is uploaded, so listings, downloads and
+ * feedback never have to fetch the object or guess its type from the key's extension. Only facts
+ * about the bytes are kept here: a deduplicated object is shared by several uploads, so the name
+ * and time of an upload belong to the referencing submission or assignment.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "stored_file")
+public class StoredFile {
+    @Id
+    @Column(name = "stored_file_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "object_key", nullable = false, unique = true)
+    private String objectKey;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    // Sniffed from the file's leading bytes, not taken from the client
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    // Null for direct uploads, whose bytes never pass through this node
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    // Filled in once the text has been extracted
+    @Column(name = "page_count")
+    private Integer pageCount;
+
+    @Column(name = "word_count")
+    private Integer wordCount;
+}
@@ -0,0 +1,41 @@
+package com.example.newmoodle.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One physical object in the bucket, shared by every Assignment/Submission that uploaded the
+ * same bytes. The object is deleted when the last reference goes away.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "stored_object")
+public class StoredObject {
+    @Id
+    @Column(name = "stored_object_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sha256", nullable = false, unique = true, length = 64)
+    private String sha256;
+
+    @Column(name = "object_key", nullable = false, unique = true)
+    private String objectKey;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -42,6 +42,10 @@ public class Submission {
     @Column(name = "file_url", nullable = false)
     private String fileUrl;
 
+    // Name the student uploaded the file under; the object itself may be shared with other uploads
+    @Column(name = "file_name")
+    private String fileName;
+
     @Enumerated(EnumType.STRING)
     @Column()
     private SubmissionStatus status;
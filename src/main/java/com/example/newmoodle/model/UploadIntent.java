@@ -0,0 +1,53 @@
+package com.example.newmoodle.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A presigned PUT URL handed to a student. The row pins the server-generated key to the
+ * uploader and the declared size/type until the upload is finalized into a Submission.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "upload_intent")
+public class UploadIntent {
+    @Id
+    @Column(name = "upload_intent_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "object_key", nullable = false, unique = true)
+    private String objectKey;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "section_id", nullable = false)
+    private Long sectionId;
+
+    @Column(name = "assignment_id", nullable = false)
+    private Long assignmentId;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,6 @@
 package com.example.newmoodle.model.request;
 
+import com.example.newmoodle.model.Language;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,4 +18,6 @@ public class AssignmentDto {
     private String description;
     private LocalDateTime dueDate;
     private MultipartFile file;
+    private boolean pregenerateDrafts;
+    private Language draftLanguage;
 }
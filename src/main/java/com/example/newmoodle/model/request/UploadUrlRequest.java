@@ -0,0 +1,24 @@
+package com.example.newmoodle.model.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadUrlRequest {
+
+    @NotBlank
+    private String fileName;
+
+    @NotBlank
+    private String contentType;
+
+    @Positive
+    private long size;
+}
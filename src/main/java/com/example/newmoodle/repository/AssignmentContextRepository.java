@@ -0,0 +1,7 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.AssignmentContext;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface AssignmentContextRepository extends JpaRepository<AssignmentContext, Long> {
+}
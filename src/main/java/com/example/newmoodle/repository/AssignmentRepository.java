@@ -3,7 +3,10 @@ package com.example.newmoodle.repository;
 import com.example.newmoodle.model.Assignment;
 import com.example.newmoodle.model.Section;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
@@ -13,4 +16,7 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
     List<Long> findIdsBySection(Section section);
 
     List<Assignment> findBySectionInOrderByDueDateAsc(List<Section> studentSections);
+
+    @Query("select a.filePath from Assignment a where a.filePath in :keys")
+    List<String> findReferencedFilePaths(@Param("keys") Collection<String> keys);
 }
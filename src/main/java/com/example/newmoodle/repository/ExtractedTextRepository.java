@@ -0,0 +1,20 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.ExtractedText;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Optional;
+
+public interface ExtractedTextRepository extends JpaRepository<ExtractedText, Long> {
+    Optional<ExtractedText> findByObjectKeyAndEtag(String objectKey, String etag);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ExtractedText t where t.objectKey in :objectKeys")
+    int deleteByObjectKeys(@Param("objectKeys") Collection<String> objectKeys);
+}
@@ -0,0 +1,7 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.FeedbackBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface FeedbackBatchRepository extends JpaRepository<FeedbackBatch, String> {
+}
@@ -0,0 +1,45 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.FeedbackGenerationLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface FeedbackGenerationLockRepository extends JpaRepository<FeedbackGenerationLock, Long> {
+
+    /**
+     * Takes the lease for the submission unless another owner holds an unexpired one.
+     * Returns 1 if the caller now owns it.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO feedback_generation_lock (submission_id, locked_by, locked_until)
+            VALUES (:submissionId, :owner, :lockedUntil)
+            ON CONFLICT (submission_id) DO UPDATE
+                SET locked_by = EXCLUDED.locked_by, locked_until = EXCLUDED.locked_until
+                WHERE feedback_generation_lock.locked_until < :now
+            """, nativeQuery = true)
+    int tryAcquire(@Param("submissionId") Long submissionId, @Param("owner") String owner,
+                   @Param("lockedUntil") LocalDateTime lockedUntil, @Param("now") LocalDateTime now);
+
+    /**
+     * Heartbeat for leases this node still holds, so a generation running longer than the lease is
+     * not taken over. Owner tokens are unique per acquisition, so they identify the rows.
+     * Returns the number of leases renewed; a lease missing from it has expired and may have been taken.
+     */
+    @Transactional
+    @Modifying
+    @Query("update FeedbackGenerationLock l set l.lockedUntil = :lockedUntil where l.lockedBy in :owners")
+    int renew(@Param("owners") Collection<String> owners, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query("delete from FeedbackGenerationLock l where l.submissionId = :submissionId and l.lockedBy = :owner")
+    int release(@Param("submissionId") Long submissionId, @Param("owner") String owner);
+}
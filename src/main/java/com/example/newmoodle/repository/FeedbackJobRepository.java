@@ -0,0 +1,85 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.FeedbackJob;
+import com.example.newmoodle.model.FeedbackJobStatus;
+import com.example.newmoodle.model.Language;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface FeedbackJobRepository extends JpaRepository<FeedbackJob, Long> {
+
+    Optional<FeedbackJob> findFirstBySubmissionIdAndLanguageAndStatusInOrderByCreatedAtDesc(Long submissionId,
+                                                                                           Language language,
+                                                                                           Collection<FeedbackJobStatus> statuses);
+
+    /**
+     * Locks up to {@code limit} runnable jobs for the calling transaction. Rows already locked by
+     * another node are skipped instead of waited on. QUEUED jobs wait until their
+     * {@code next_attempt_at}. RUNNING jobs whose lock is older than {@code staleBefore} belonged
+     * to a node that died mid-job and are picked up again.
+     */
+    @Query(value = """
+            SELECT * FROM feedback_job
+            WHERE (status = 'QUEUED' AND (next_attempt_at IS NULL OR next_attempt_at <= :now))
+               OR (status = 'RUNNING' AND locked_at < :staleBefore)
+            ORDER BY created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<FeedbackJob> lockNextRunnable(@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore,
+                                       @Param("limit") int limit);
+
+    /**
+     * Heartbeat for jobs this node is still running, so they are not reclaimed as stale.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update FeedbackJob j set j.lockedAt = :now
+            where j.id in :ids and j.lockedBy = :owner
+              and j.status = com.example.newmoodle.model.FeedbackJobStatus.RUNNING
+            """)
+    int renewLocks(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    /**
+     * Completes the job only if the run identified by {@code owner} and {@code attempts} still holds it.
+     * Returns 0 if the job was reclaimed in the meantime.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update FeedbackJob j
+            set j.status = com.example.newmoodle.model.FeedbackJobStatus.COMPLETED, j.feedbackId = :feedbackId,
+                j.lastError = null, j.lockedBy = null, j.lockedAt = null, j.updatedAt = :now
+            where j.id = :id and j.lockedBy = :owner and j.attempts = :attempts
+              and j.status = com.example.newmoodle.model.FeedbackJobStatus.RUNNING
+            """)
+    int completeIfOwned(@Param("id") Long id, @Param("owner") String owner, @Param("attempts") int attempts,
+                        @Param("feedbackId") Long feedbackId, @Param("now") LocalDateTime now);
+
+    /**
+     * Re-queues or fails the job, only if the run identified by {@code owner} and {@code attempts}
+     * still holds it. A re-queued job is not claimed again before {@code nextAttemptAt} (null: right
+     * away). Returns 0 if the job was reclaimed in the meantime.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update FeedbackJob j
+            set j.status = :status, j.lastError = :error, j.nextAttemptAt = :nextAttemptAt,
+                j.lockedBy = null, j.lockedAt = null, j.updatedAt = :now
+            where j.id = :id and j.lockedBy = :owner and j.attempts = :attempts
+              and j.status = com.example.newmoodle.model.FeedbackJobStatus.RUNNING
+            """)
+    int failIfOwned(@Param("id") Long id, @Param("owner") String owner, @Param("attempts") int attempts,
+                    @Param("status") FeedbackJobStatus status, @Param("error") String error,
+                    @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("now") LocalDateTime now);
+}
@@ -3,5 +3,9 @@ package com.example.newmoodle.repository;
 import com.example.newmoodle.model.Feedback;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Optional;
+
 public interface FeedbackRepository extends JpaRepository<Feedback, Long> {
+
+    Optional<Feedback> findBySubmissionId(Long submissionId);
 }
@@ -0,0 +1,28 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.ObjectDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ObjectDeletionRepository extends JpaRepository<ObjectDeletion, Long> {
+
+    /**
+     * Locks up to {@code limit} deletions that are due. Rows locked by another node are skipped.
+     */
+    @Query(value = """
+            SELECT * FROM object_deletion_outbox
+            WHERE next_attempt_at <= :now
+            ORDER BY next_attempt_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<ObjectDeletion> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Query("select d.objectKey from ObjectDeletion d where d.objectKey in :keys")
+    List<String> findQueuedKeys(@Param("keys") Collection<String> keys);
+}
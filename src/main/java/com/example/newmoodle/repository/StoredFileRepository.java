@@ -0,0 +1,43 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+
+    Optional<StoredFile> findByObjectKey(String objectKey);
+
+    List<StoredFile> findByObjectKeyIn(Collection<String> objectKeys);
+
+    /**
+     * Catalogs the object unless it already is (deduplicated uploads share one entry).
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO stored_file (object_key, size_bytes, content_type, sha256)
+            VALUES (:objectKey, :size, :contentType, :sha256)
+            ON CONFLICT (object_key) DO NOTHING
+            """, nativeQuery = true)
+    int registerIfAbsent(@Param("objectKey") String objectKey, @Param("size") long size,
+                         @Param("contentType") String contentType, @Param("sha256") String sha256);
+
+    @Transactional
+    @Modifying
+    @Query("update StoredFile f set f.pageCount = :pageCount, f.wordCount = :wordCount where f.objectKey = :objectKey")
+    int updateTextStats(@Param("objectKey") String objectKey, @Param("pageCount") Integer pageCount,
+                        @Param("wordCount") int wordCount);
+
+    @Transactional
+    @Modifying
+    @Query("delete from StoredFile f where f.objectKey in :objectKeys")
+    int deleteByObjectKeys(@Param("objectKeys") Collection<String> objectKeys);
+}
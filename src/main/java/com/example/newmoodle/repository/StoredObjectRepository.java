@@ -0,0 +1,96 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.StoredObject;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reference counts of stored objects. A row whose count dropped to 0 stays until the bucket
+ * delete runs, so a new upload of the same bytes can take it back; {@code ref_count = -1} marks
+ * an object whose bucket delete is in progress, which nothing may reference any more.
+ */
+public interface StoredObjectRepository extends JpaRepository<StoredObject, Long> {
+
+    /**
+     * Adds a reference to an existing object with this hash, returning its key. Empty if no such
+     * object is stored, or it is being deleted.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE stored_object SET ref_count = ref_count + 1
+            WHERE sha256 = :sha256 AND size_bytes = :size AND ref_count >= 0
+            RETURNING object_key
+            """, nativeQuery = true)
+    Optional<String> addReference(@Param("sha256") String sha256, @Param("size") long size);
+
+    /**
+     * Registers a freshly uploaded object with one reference. If a concurrent upload of the same
+     * bytes registered first, that row gets the reference instead and its key is returned. Empty
+     * if the row with this hash is being deleted. Registrations of one hash are serialized with an
+     * advisory lock held to the end of the transaction: two inserts racing past the conflict check
+     * would otherwise fail on the object_key index, which ON CONFLICT does not arbitrate.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO stored_object (sha256, object_key, size_bytes, ref_count, created_at)
+            SELECT :sha256, :objectKey, :size, 1, now()
+            FROM (SELECT pg_advisory_xact_lock(hashtext(:sha256))) AS registration_lock
+            ON CONFLICT (sha256) DO UPDATE SET ref_count = stored_object.ref_count + 1
+            WHERE stored_object.ref_count >= 0
+            RETURNING object_key
+            """, nativeQuery = true)
+    Optional<String> register(@Param("sha256") String sha256, @Param("objectKey") String objectKey, @Param("size") long size);
+
+    @Query("select count(o) > 0 from StoredObject o where o.sha256 = :sha256 and o.refCount < 0")
+    boolean isBeingDeleted(@Param("sha256") String sha256);
+
+    /**
+     * Drops one reference. Returns the remaining count, or empty if the key is not reference-counted
+     * (direct uploads, files stored before deduplication).
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE stored_object SET ref_count = ref_count - 1
+            WHERE object_key = :objectKey AND ref_count > 0
+            RETURNING ref_count
+            """, nativeQuery = true)
+    Optional<Integer> releaseReference(@Param("objectKey") String objectKey);
+
+    /**
+     * Marks the unreferenced ones among {@code keys} as being deleted, so no upload takes them
+     * back while the bucket delete runs. Blocks on rows an uncommitted upload just referenced.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE stored_object SET ref_count = -1
+            WHERE object_key IN (:keys) AND ref_count <= 0
+            RETURNING object_key
+            """, nativeQuery = true)
+    List<String> markDeleting(@Param("keys") Collection<String> keys);
+
+    /**
+     * Hands objects whose bucket delete failed back to the reference count, unreferenced.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE stored_object SET ref_count = 0 WHERE object_key IN (:keys) AND ref_count < 0", nativeQuery = true)
+    int unmarkDeleting(@Param("keys") Collection<String> keys);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM stored_object WHERE object_key IN (:keys) AND ref_count < 0", nativeQuery = true)
+    int deleteMarked(@Param("keys") Collection<String> keys);
+
+    @Query("select o.objectKey from StoredObject o where o.objectKey in :keys and o.refCount > 0")
+    List<String> findLiveKeys(@Param("keys") Collection<String> keys);
+
+    @Query("select o.objectKey from StoredObject o where o.objectKey in :keys")
+    List<String> findReferencedKeys(@Param("keys") Collection<String> keys);
+}
@@ -1,10 +1,41 @@
 package com.example.newmoodle.repository;
 
 import com.example.newmoodle.model.Submission;
+import com.example.newmoodle.model.SubmissionStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface SubmissionRepository extends JpaRepository<Submission, Long> {
     List<Submission> findByAssignmentId(Long assignmentId);
+
+    List<Submission> findByAssignmentIdAndStatus(Long assignmentId, SubmissionStatus status);
+
+    @Query("select s.fileUrl from Submission s where s.assignment.id = :assignmentId")
+    List<String> findFileUrlsByAssignmentId(@Param("assignmentId") Long assignmentId);
+
+    /**
+     * Loads the submission and row-locks it until the end of the calling transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Submission s where s.id = :id")
+    Optional<Submission> findByIdForUpdate(@Param("id") Long id);
+
+    @EntityGraph(attributePaths = {"assignment"})
+    Optional<Submission> findWithAssignmentById(Long id);
+
+    @Modifying
+    @Query("update Submission s set s.status = :status where s.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") SubmissionStatus status);
+
+    @Query("select s.fileUrl from Submission s where s.fileUrl in :keys")
+    List<String> findReferencedFileUrls(@Param("keys") Collection<String> keys);
 }
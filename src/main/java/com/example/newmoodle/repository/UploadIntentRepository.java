@@ -0,0 +1,20 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.UploadIntent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadIntentRepository extends JpaRepository<UploadIntent, Long> {
+    Optional<UploadIntent> findByObjectKey(String objectKey);
+
+    List<UploadIntent> findTop100ByExpiresAtBefore(LocalDateTime cutoff);
+
+    @Query("select i.objectKey from UploadIntent i where i.objectKey in :keys")
+    List<String> findReferencedKeys(@Param("keys") Collection<String> keys);
+}
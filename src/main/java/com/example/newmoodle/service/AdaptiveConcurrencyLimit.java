@@ -0,0 +1,142 @@
+package com.example.newmoodle.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limit on concurrent LLM calls that adapts to how the provider is coping. Every success while the
+ * limit is actually in use raises it additively; a rate-limit or overload answer halves it
+ * (AIMD). Successful calls whose latency climbs well above the observed minimum shrink it in
+ * proportion to the latency gradient, so the limit backs off before the provider starts refusing.
+ */
+class AdaptiveConcurrencyLimit {
+
+    // The minimum latency is re-learned every this many samples, so it follows the provider when it gets slower
+    private static final int MIN_RTT_WINDOW = 100;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double dropRatio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long windowMinRttNanos = Long.MAX_VALUE;
+    private int windowSamples;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double latencyTolerance, double dropRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTolerance = latencyTolerance;
+        this.dropRatio = dropRatio;
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+    }
+
+    /**
+     * Takes a slot, waiting up to {@code maxWaitMillis} for one to free up.
+     * @return false if no slot became available in time
+     */
+    boolean acquire(long maxWaitMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a slot after a successful call.
+     * @param rttNanos latency of the call, or a negative value if it should not be sampled (streams)
+     */
+    void onSuccess(long rttNanos) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight * 2 >= limit; // Don't grow a limit the traffic isn't using
+            inFlight--;
+            if (rttNanos >= 0) {
+                sample(rttNanos);
+                double tolerated = minRttNanos * latencyTolerance;
+                if (rttNanos > tolerated) {
+                    limit = Math.max(minLimit, limit * Math.max(dropRatio, tolerated / rttNanos));
+                    released.signalAll();
+                    return;
+                }
+            }
+            if (saturated) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a slot after the provider refused or timed out.
+     */
+    void onDropped() {
+        lock.lock();
+        try {
+            inFlight--;
+            limit = Math.max(minLimit, limit * dropRatio);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a slot without adjusting the limit (cancelled call, bad request).
+     */
+    void onIgnore() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(long rttNanos) {
+        minRttNanos = Math.min(minRttNanos, rttNanos);
+        windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+        if (++windowSamples >= MIN_RTT_WINDOW) {
+            minRttNanos = windowMinRttNanos;
+            windowMinRttNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+}
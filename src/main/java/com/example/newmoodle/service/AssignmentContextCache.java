@@ -0,0 +1,108 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.model.AssignmentContext;
+import com.example.newmoodle.repository.AssignmentContextRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Caches the extracted assignment attachment text used in feedback prompts.
+ * The text is identical for every submission of an assignment, so it is extracted once per
+ * (assignment id, file key). A bounded in-memory LRU sits in front of an optional
+ * assignment_context table that survives restarts and is shared between nodes.
+ * Because the file key is part of the key, replacing the attachment never serves stale text.
+ */
+@Component
+@RequiredArgsConstructor
+public class AssignmentContextCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssignmentContextCache.class);
+
+    private final AssignmentContextRepository assignmentContextRepository;
+
+    @Value("${feedback.context-cache.max-entries:256}")
+    private int maxEntries;
+
+    @Value("${feedback.context-cache.persist:true}")
+    private boolean persist;
+
+    private final Map<String, String> memory = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * Returns the cached context or computes it with {@code loader}. Exceptions thrown by the
+     * loader are propagated and nothing is cached, so transient download/parse errors are retried.
+     */
+    public String get(Long assignmentId, String fileKey, Callable<String> loader) throws Exception {
+        String key = cacheKey(assignmentId, fileKey);
+        synchronized (memory) {
+            String cached = memory.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        if (persist) {
+            String stored = assignmentContextRepository.findById(assignmentId)
+                    .filter(ctx -> fileKey.equals(ctx.getFileKey()))
+                    .map(AssignmentContext::getContent)
+                    .orElse(null);
+            if (stored != null) {
+                remember(key, stored);
+                return stored;
+            }
+        }
+
+        String content = loader.call();
+        remember(key, content);
+        if (persist) {
+            try {
+                assignmentContextRepository.save(AssignmentContext.builder()
+                        .assignmentId(assignmentId)
+                        .fileKey(fileKey)
+                        .content(content)
+                        .createdAt(LocalDateTime.now())
+                        .build());
+            } catch (Exception e) {
+                // The persisted copy is an optimisation only
+                logger.warn("Could not persist assignment context for assignment {}: {}", assignmentId, e.getMessage());
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Drops every cached context of the assignment. Call when its file changes or it is deleted.
+     */
+    public void invalidate(Long assignmentId) {
+        String prefix = assignmentId + "|";
+        synchronized (memory) {
+            memory.keySet().removeIf(k -> k.startsWith(prefix));
+        }
+        if (persist && assignmentContextRepository.existsById(assignmentId)) {
+            assignmentContextRepository.deleteById(assignmentId);
+        }
+    }
+
+    private void remember(String key, String content) {
+        synchronized (memory) {
+            memory.put(key, content);
+        }
+    }
+
+    private static String cacheKey(Long assignmentId, String fileKey) {
+        return assignmentId + "|" + fileKey;
+    }
+}
@@ -9,15 +9,19 @@ import com.example.newmoodle.model.request.UserSummaryDto;
 import com.example.newmoodle.model.response.ApiError;
 import com.example.newmoodle.repository.AssignmentRepository;
 import com.example.newmoodle.repository.SectionRepository;
+import com.example.newmoodle.repository.SubmissionRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.Resource;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -31,14 +35,17 @@ public class AssignmentService {
     private final FileService fileService;
     private final UserService userService;
     private final SectionRepository sectionRepository;
+    private final AssignmentContextCache assignmentContextCache;
+    private final SubmissionRepository submissionRepository;
 
+    @Transactional
     public Assignment createAssignment(AssignmentDto assignment, User teacher, Long sectionId) throws IOException {
-        String filePath = null;
+        FileReference file = null;
 
         try {
             if (assignment.getFile() != null && !assignment.getFile().isEmpty()) {
                 try {
-                    filePath = fileService.uploadFile(assignment.getFile());
+                    file = fileService.uploadFile(assignment.getFile());
                 } catch (IOException e) {
                     System.err.println("Error saving file during assignment creation: " + e.getMessage());
                     // Пробрасываем исключение дальше
@@ -52,7 +59,10 @@ public class AssignmentService {
                     .dueDate(assignment.getDueDate())
                     .description(assignment.getDescription())
                     .teacher(teacher)
-                    .filePath(filePath) // Устанавливаем filePath (может быть null)
+                    .filePath(file != null ? file.key() : null) // Устанавливаем filePath (может быть null)
+                    .fileName(file != null ? file.fileName() : null)
+                    .pregenerateDrafts(assignment.isPregenerateDrafts())
+                    .draftLanguage(assignment.getDraftLanguage() != null ? assignment.getDraftLanguage() : Language.ENGLISH)
                     .section(sectionService.getSectionById(sectionId)) // Убедитесь, что getSectionById обрабатывает случай, когда секция не найдена
                     .build();
 
@@ -69,9 +79,43 @@ public class AssignmentService {
             throw new RuntimeException("Failed to create assignment", e);
         }
     }
+    /**
+     * Turns background feedback drafts on or off for the assignment's future submissions.
+     */
+    @Transactional
+    public Assignment updateDraftSettings(Long assignmentId, User teacher, boolean pregenerateDrafts, Language draftLanguage) {
+        Assignment assignment = getAssignmentById(assignmentId);
+        if (!assignment.getTeacher().equals(teacher)) {
+            throw new AccessDeniedException("User is not the teacher of this assignment.");
+        }
+        assignment.setPregenerateDrafts(pregenerateDrafts);
+        if (draftLanguage != null) {
+            assignment.setDraftLanguage(draftLanguage);
+        }
+        return assignmentRepository.save(assignment);
+    }
+
     public Resource downloadFile(Long assignmentId) {
         Assignment assignment = getAssignmentById(assignmentId);
-        return fileService.loadFileAsResource(assignment.getFilePath());
+        return fileService.loadFileAsResource(assignment.getFilePath(), assignment.getFileName());
+    }
+
+    /**
+     * Content type of the assignment file as sniffed at upload time.
+     */
+    public String getFileContentType(Long assignmentId) {
+        return fileService.getContentType(getAssignmentById(assignmentId).getFilePath());
+    }
+
+    /**
+     * Presigned URL the client can be redirected to, or null if the assignment has no file.
+     */
+    public URI getDownloadUrl(Long assignmentId) {
+        Assignment assignment = getAssignmentById(assignmentId);
+        if (assignment.getFilePath() == null || assignment.getFilePath().isEmpty()) {
+            return null;
+        }
+        return fileService.presignDownload(assignment.getFilePath(), assignment.getFileName());
     }
 
     public Assignment getAssignmentById(Long id) {
@@ -83,9 +127,8 @@ public class AssignmentService {
 
         List<Assignment> assignments = assignmentRepository.findBySection(section);
 
-        return assignments.stream()
-                .map(this::mapToAssignmentDto)
-                .collect(Collectors.toList());    }
+        return mapToAssignmentDtos(assignments);
+    }
 
     @Transactional
     public void deleteAssignment(Long id) {
@@ -94,6 +137,9 @@ public class AssignmentService {
         if (assignment.getFilePath() != null && !assignment.getFilePath().isEmpty()) {
             fileService.deleteFile(assignment.getFilePath());
         }
+        // Submission rows go with the assignment (cascade), their files have to be queued explicitly
+        submissionRepository.findFileUrlsByAssignmentId(assignment.getId()).forEach(fileService::deleteFile);
+        assignmentContextCache.invalidate(assignment.getId());
         assignmentRepository.delete(assignment);
     }
     @Transactional(readOnly = true) // Важно для ленивой загрузки внутри мапперов
@@ -116,18 +162,34 @@ public class AssignmentService {
         List<Assignment> assignments = assignmentRepository.findBySectionInOrderByDueDateAsc(studentSections);
 
         // Преобразуем в DTO, используя обновленные мапперы
+        return mapToAssignmentDtos(assignments);
+    }
+
+    /**
+     * Maps a listing with the file catalog entries of all assignments fetched in one query.
+     */
+    private List<AssignmentsDto> mapToAssignmentDtos(List<Assignment> assignments) {
+        Map<String, StoredFile> files = fileService.getFileInfos(assignments.stream().map(Assignment::getFilePath).toList());
         return assignments.stream()
-                .map(this::mapToAssignmentDto)
+                .map(assignment -> mapToAssignmentDto(assignment, files.get(assignment.getFilePath())))
                 .collect(Collectors.toList());
     }
+
     public AssignmentsDto mapToAssignmentDto(Assignment assignment) {
         if (assignment == null) return null;
+        return mapToAssignmentDto(assignment, fileService.getFileInfo(assignment.getFilePath()).orElse(null));
+    }
+
+    private AssignmentsDto mapToAssignmentDto(Assignment assignment, StoredFile file) {
         return AssignmentsDto.builder()
                 .id(assignment.getId())
                 .title(assignment.getTitle())
                 .description(assignment.getDescription())
                 .dueDate(assignment.getDueDate())
                 .filePath(assignment.getFilePath()) // Может требовать обработки FileService
+                .file(fileService.mapToFileInfoDto(file, assignment.getFileName()))
+                .pregenerateDrafts(assignment.isPregenerateDrafts())
+                .draftLanguage(assignment.getDraftLanguage())
                 .section(mapToSectionDto(assignment.getSection())) // Используем маппер для полного SectionDto
                 .teacher(mapToUserSummaryDto(assignment.getTeacher()))
                 .build();
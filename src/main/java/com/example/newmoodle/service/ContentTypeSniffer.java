@@ -0,0 +1,102 @@
+package com.example.newmoodle.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Determines a file's MIME type from its leading bytes instead of trusting the file name or the
+ * Content-Type the client sent.
+ */
+final class ContentTypeSniffer {
+
+    static final int HEAD_BYTES = 4096;
+
+    static final String OCTET_STREAM = "application/octet-stream";
+    static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    private static final byte[] PDF = {'%', 'P', 'D', 'F', '-'};
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] GIF = {'G', 'I', 'F', '8'};
+    private static final byte[] RIFF = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP = {'W', 'E', 'B', 'P'};
+    private static final byte[] ZIP = {'P', 'K', 3, 4};
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private ContentTypeSniffer() {
+    }
+
+    /**
+     * @param head the first {@code length} bytes of the file (at most {@link #HEAD_BYTES} are looked at).
+     */
+    static String sniff(byte[] head, int length) {
+        if (startsWith(head, length, PDF, 0)) {
+            return "application/pdf";
+        }
+        if (startsWith(head, length, PNG, 0)) {
+            return "image/png";
+        }
+        if (startsWith(head, length, JPEG, 0)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, length, GIF, 0)) {
+            return "image/gif";
+        }
+        if (startsWith(head, length, RIFF, 0) && startsWith(head, length, WEBP, 8)) {
+            return "image/webp";
+        }
+        if (startsWith(head, length, ZIP, 0)) {
+            // OOXML packages list [Content_Types].xml and the word/ parts in the first local headers
+            return contains(head, length, "word/") ? DOCX : "application/zip";
+        }
+        if (length == 0) {
+            return OCTET_STREAM;
+        }
+        return isText(head, length) ? "text/plain" : OCTET_STREAM;
+    }
+
+    private static boolean isText(byte[] head, int length) {
+        int start = startsWith(head, length, UTF8_BOM, 0) ? UTF8_BOM.length : 0;
+        for (int i = start; i < length; i++) {
+            if (head[i] == 0) {
+                return false;
+            }
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        // The block may end in the middle of a multi-byte sequence; ignore up to 3 trailing bytes
+        for (int cut = 0; cut <= Math.min(3, length - start); cut++) {
+            try {
+                decoder.reset().decode(ByteBuffer.wrap(head, start, length - start - cut));
+                return true;
+            } catch (CharacterCodingException e) {
+                // Try again without the last byte
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] head, int length, byte[] magic, int offset) {
+        return length >= offset + magic.length
+                && Arrays.equals(head, offset, offset + magic.length, magic, 0, magic.length);
+    }
+
+    private static boolean contains(byte[] head, int length, String ascii) {
+        byte[] needle = ascii.getBytes(StandardCharsets.US_ASCII);
+        outer:
+        for (int i = 0; i + needle.length <= length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (head[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.newmoodle.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Dispatches a spooled local file to the right extractor by extension.
+ * Used in-process when isolation is disabled and inside {@link ExtractionWorkerMain} otherwise.
+ */
+public class DocumentTextExtractor {
+
+    private final PdfTextExtractor pdfTextExtractor;
+    private final DocxTextExtractor docxTextExtractor;
+    private final int maxChars;
+
+    public DocumentTextExtractor(PdfTextExtractor pdfTextExtractor, DocxTextExtractor docxTextExtractor, int maxChars) {
+        this.pdfTextExtractor = pdfTextExtractor;
+        this.docxTextExtractor = docxTextExtractor;
+        this.maxChars = maxChars;
+    }
+
+    public String extract(Path file, String extension) throws Exception {
+        return extractDocument(file, extension).text();
+    }
+
+    public ExtractedDocument extractDocument(Path file, String extension) throws Exception {
+        return switch (extension) {
+            case "pdf" -> pdfTextExtractor.extractDocument(file);
+            case "docx" -> new ExtractedDocument(docxTextExtractor.extract(file), null);
+            case "txt" -> new ExtractedDocument(readText(file), null);
+            default -> throw new IllegalArgumentException("Unsupported file type for text extraction: " + extension);
+        };
+    }
+
+    private String readText(Path file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[8192];
+        try (InputStream in = Files.newInputStream(file);
+             Reader reader = new java.io.InputStreamReader(in, StandardCharsets.UTF_8)) {
+            int read;
+            while (text.length() < maxChars && (read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, Math.min(read, maxChars - text.length()));
+            }
+        }
+        return text.toString();
+    }
+}
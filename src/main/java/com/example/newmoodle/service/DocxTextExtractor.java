@@ -0,0 +1,247 @@
+package com.example.newmoodle.service;
+
+import jakarta.xml.bind.JAXBElement;
+import org.docx4j.TraversalUtil;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.wml.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts text from a DOCX that has been spooled to a local file.
+ * The package is opened as a plain zip and each WordprocessingML part is read with a StAX pull
+ * parser, so memory use does not grow with document size (apart from the resulting text).
+ * Body text including tables comes first, then headers, footers, footnotes and endnotes.
+ * If the streaming pass fails, the full docx4j/JAXB load is used as a fallback.
+ */
+public class DocxTextExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocxTextExtractor.class);
+
+    private static final String WML_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String MAIN_PART = "word/document.xml";
+    private static final List<Pattern> SECONDARY_PARTS = List.of(
+            Pattern.compile("word/header\\d*\\.xml"),
+            Pattern.compile("word/footer\\d*\\.xml"),
+            Pattern.compile("word/footnotes\\.xml"),
+            Pattern.compile("word/endnotes\\.xml"));
+
+    private final XMLInputFactory xmlInputFactory;
+    private final int maxChars;
+
+    public DocxTextExtractor(int maxChars) {
+        this.maxChars = maxChars;
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        // Untrusted student uploads: no DTDs, no external entities
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    public String extract(Path docxFile) throws Exception {
+        try {
+            return extractWithStax(docxFile);
+        } catch (IOException | XMLStreamException e) {
+            logger.warn("Streaming DOCX extraction failed ({}), falling back to docx4j", e.getMessage());
+            try (InputStream inputStream = Files.newInputStream(docxFile)) {
+                return extractWithDocx4j(inputStream);
+            }
+        }
+    }
+
+    public String extractWithStax(Path docxFile) throws IOException, XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        try (ZipFile zip = new ZipFile(docxFile.toFile())) {
+            ZipEntry main = zip.getEntry(MAIN_PART);
+            if (main == null) {
+                throw new IOException("Not a WordprocessingML package: " + MAIN_PART + " is missing");
+            }
+            appendPart(zip, main, text);
+
+            List<ZipEntry> secondary = new ArrayList<>();
+            zip.stream()
+                    .filter(entry -> SECONDARY_PARTS.stream().anyMatch(p -> p.matcher(entry.getName()).matches()))
+                    .sorted(Comparator.comparing(ZipEntry::getName))
+                    .forEach(secondary::add);
+            for (ZipEntry entry : secondary) {
+                if (text.length() >= maxChars) {
+                    break;
+                }
+                appendPart(zip, entry, text);
+            }
+        }
+        return truncate(text);
+    }
+
+    private String truncate(StringBuilder text) {
+        if (text.length() > maxChars) {
+            text.setLength(maxChars);
+            text.append("\n[... text truncated after ").append(maxChars).append(" characters ...]");
+        }
+        return text.toString();
+    }
+
+    private void appendPart(ZipFile zip, ZipEntry entry, StringBuilder text) throws IOException, XMLStreamException {
+        try (InputStream inputStream = zip.getInputStream(entry)) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+            try {
+                appendText(reader, text);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private void appendText(XMLStreamReader reader, StringBuilder text) throws XMLStreamException {
+        int cellDepth = 0;
+        while (reader.hasNext() && text.length() < maxChars) {
+            int event = reader.next();
+            if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+                continue;
+            }
+            if (!WML_NS.equals(reader.getNamespaceURI())) {
+                continue;
+            }
+            String name = reader.getLocalName();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (name) {
+                    // Property blocks hold tab stops and the like, not content
+                    case "pPr", "rPr", "sectPr", "tblPr", "trPr", "tcPr" -> skipElement(reader);
+                    case "t" -> text.append(reader.getElementText());
+                    case "tab" -> text.append('\t');
+                    case "br", "cr" -> text.append('\n');
+                    case "tc" -> cellDepth++;
+                    default -> { }
+                }
+            } else {
+                switch (name) {
+                    case "p" -> text.append(cellDepth > 0 ? ' ' : '\n');
+                    case "tc" -> {
+                        cellDepth--;
+                        text.append('\t');
+                    }
+                    case "tr" -> text.append('\n');
+                    default -> { }
+                }
+            }
+        }
+        text.append('\n');
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Full JAXB load through docx4j. Slower and heap-hungry, kept for packages the streaming pass rejects.
+     * Walks the unmarshalled object tree with the same layout rules and part order as the streaming
+     * pass, so both produce the same text.
+     */
+    public String extractWithDocx4j(InputStream inputStream) throws Exception {
+        WordprocessingMLPackage wordMLPackage = WordprocessingMLPackage.load(inputStream);
+        StringBuilder text = new StringBuilder();
+        appendDocx4jPart(wordMLPackage.getMainDocumentPart().getContents(), text);
+
+        List<JaxbXmlPart<?>> secondary = new ArrayList<>();
+        wordMLPackage.getParts().getParts().forEach((partName, part) -> {
+            String name = partName.getName().substring(1); // Part names start with '/'
+            if (part instanceof JaxbXmlPart<?> xmlPart
+                    && SECONDARY_PARTS.stream().anyMatch(p -> p.matcher(name).matches())) {
+                secondary.add(xmlPart);
+            }
+        });
+        secondary.sort(Comparator.comparing(part -> part.getPartName().getName()));
+        for (JaxbXmlPart<?> part : secondary) {
+            if (text.length() >= maxChars) {
+                break;
+            }
+            appendDocx4jPart(part.getContents(), text);
+        }
+        return truncate(text);
+    }
+
+    private void appendDocx4jPart(Object root, StringBuilder text) {
+        appendDocx4j(root, text, 0);
+        text.append('\n');
+    }
+
+    private void appendDocx4j(Object node, StringBuilder text, int cellDepth) {
+        if (text.length() >= maxChars) {
+            return;
+        }
+        if (node instanceof JAXBElement<?> element && element.getValue() instanceof Text) {
+            // w:instrText and w:delText unmarshal to Text as well; only w:t is content
+            if ("t".equals(element.getName().getLocalPart())) {
+                text.append(((Text) element.getValue()).getValue());
+            }
+            return;
+        }
+        Object value = XmlUtils.unwrap(node);
+        if (value instanceof Text t) {
+            text.append(t.getValue());
+            return;
+        }
+        if (value instanceof R.Tab) {
+            text.append('\t');
+            return;
+        }
+        if (value instanceof Br || value instanceof R.Cr) {
+            text.append('\n');
+            return;
+        }
+
+        int childDepth = value instanceof Tc ? cellDepth + 1 : cellDepth;
+        for (Object child : childrenOf(value)) {
+            appendDocx4j(child, text, childDepth);
+        }
+        if (value instanceof P) {
+            text.append(cellDepth > 0 ? ' ' : '\n');
+        } else if (value instanceof Tc) {
+            text.append('\t');
+        } else if (value instanceof Tr) {
+            text.append('\n');
+        }
+    }
+
+    private static List<?> childrenOf(Object value) {
+        if (value instanceof CTFootnotes footnotes) {
+            return footnotes.getFootnote();
+        }
+        if (value instanceof CTEndnotes endnotes) {
+            return endnotes.getEndnote();
+        }
+        if (value instanceof CTFtnEdn note) {
+            return note.getContent();
+        }
+        if (value instanceof Document document) {
+            return document.getBody() != null ? document.getBody().getContent() : List.of();
+        }
+        List<Object> children = TraversalUtil.getChildrenImpl(value);
+        return children != null ? children : List.of();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.newmoodle.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Generates speculative feedback drafts for new submissions of assignments that opted in, so the
+ * teacher's later request can be answered from the stored draft. Drafts are strictly best effort
+ * and run under a budget that keeps them out of the way of interactive generation:
+ * <ul>
+ *     <li>Concurrency: the small, low-priority {@code draftExecutor}; a full queue drops the draft.</li>
+ *     <li>Rate: at most {@code feedback.drafts.max-per-minute} draft LLM calls start per minute.</li>
+ *     <li>Priority: a draft does not start while a teacher-requested generation is running on this
+ *     node, and is dropped if that lasts longer than {@code feedback.drafts.max-defer-seconds}.</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class DraftFeedbackWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(DraftFeedbackWorker.class);
+    private static final long BUDGET_POLL_MS = 500;
+
+    private final FeedbackService feedbackService;
+    @Qualifier("draftExecutor")
+    private final ThreadPoolTaskExecutor draftExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${feedback.drafts.enabled:true}")
+    private boolean enabled;
+
+    @Value("${feedback.drafts.max-per-minute:10}")
+    private int maxPerMinute;
+
+    @Value("${feedback.drafts.max-defer-seconds:600}")
+    private long maxDeferSeconds;
+
+    private long nextSlotAt;
+
+    private Counter generated;
+    private Counter dropped;
+    private Counter failed;
+
+    @PostConstruct
+    void registerMetrics() {
+        generated = Counter.builder("feedback.drafts").tag("result", "generated").register(meterRegistry);
+        dropped = Counter.builder("feedback.drafts").tag("result", "dropped").register(meterRegistry);
+        failed = Counter.builder("feedback.drafts").tag("result", "failed").register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubmissionCreated(SubmissionCreatedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            draftExecutor.execute(() -> generate(event.submissionId()));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            logger.info("Draft queue is full, no feedback draft for submission {}", event.submissionId());
+        }
+    }
+
+    private void generate(Long submissionId) {
+        try {
+            if (!awaitBudget()) {
+                dropped.increment();
+                logger.info("No draft budget within {}s, no feedback draft for submission {}", maxDeferSeconds, submissionId);
+                return;
+            }
+            if (feedbackService.generateDraft(submissionId) != null) {
+                generated.increment();
+                logger.info("Generated feedback draft for submission {}", submissionId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // The teacher's own request will generate the feedback
+            failed.increment();
+            logger.warn("Feedback draft for submission {} failed: {}", submissionId, e.getMessage());
+        }
+    }
+
+    /**
+     * Waits until no interactive generation is running and the rate budget has a free slot.
+     * @return false if that did not happen within {@code maxDeferSeconds}.
+     */
+    private boolean awaitBudget() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxDeferSeconds * 1000;
+        while (true) {
+            if (feedbackService.getInteractiveInFlight() == 0 && tryTakeSlot()) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(BUDGET_POLL_MS);
+        }
+    }
+
+    private synchronized boolean tryTakeSlot() {
+        long now = System.currentTimeMillis();
+        if (now < nextSlotAt) {
+            return false;
+        }
+        nextSlotAt = now + 60_000L / Math.max(1, maxPerMinute);
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.newmoodle.service;
+
+/**
+ * Text extracted from a document, plus its page count where the format has pages (PDF).
+ */
+public record ExtractedDocument(String text, Integer pageCount) {
+
+    public int wordCount() {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean whitespace = Character.isWhitespace(text.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        return words;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.model.ExtractedText;
+import com.example.newmoodle.repository.ExtractedTextRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Two-tier cache for {@link FileService#extractText(String)}, keyed by object key + ETag.
+ * <ul>
+ *     <li>Memory: LRU whose budget is the total number of cached characters, not the entry count.</li>
+ *     <li>Database: extracted_text table, shared by all nodes and kept across restarts.</li>
+ * </ul>
+ * Concurrent misses for the same key on one node share a single extraction.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExtractedTextCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractedTextCache.class);
+
+    private final ExtractedTextRepository extractedTextRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${extraction.cache.max-chars:20000000}")
+    private long maxChars;
+
+    @Value("${extraction.cache.persist:true}")
+    private boolean persist;
+
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(128, 0.75f, true);
+    private long memoryChars;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter memoryHits;
+    private Counter databaseHits;
+    private Counter misses;
+    private Counter evictions;
+
+    @PostConstruct
+    void registerMetrics() {
+        memoryHits = Counter.builder("extraction.cache.requests").tag("result", "hit-memory").register(meterRegistry);
+        databaseHits = Counter.builder("extraction.cache.requests").tag("result", "hit-db").register(meterRegistry);
+        misses = Counter.builder("extraction.cache.requests").tag("result", "miss").register(meterRegistry);
+        evictions = Counter.builder("extraction.cache.evictions").register(meterRegistry);
+        Gauge.builder("extraction.cache.memory.chars", this, ExtractedTextCache::getMemoryChars).register(meterRegistry);
+    }
+
+    public String get(String objectKey, String etag, Callable<String> extractor) throws Exception {
+        String key = objectKey + "|" + etag;
+        String cached = getFromMemory(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            String text = load(objectKey, etag, extractor);
+            putInMemory(key, text);
+            mine.complete(text);
+            return text;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private String load(String objectKey, String etag, Callable<String> extractor) throws Exception {
+        if (persist) {
+            var stored = extractedTextRepository.findByObjectKeyAndEtag(objectKey, etag);
+            if (stored.isPresent()) {
+                databaseHits.increment();
+                return stored.get().getContent();
+            }
+        }
+
+        misses.increment();
+        String text = extractor.call();
+        if (persist) {
+            try {
+                extractedTextRepository.save(ExtractedText.builder()
+                        .objectKey(objectKey)
+                        .etag(etag)
+                        .content(text)
+                        .charCount(text.length())
+                        .createdAt(LocalDateTime.now())
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                logger.debug("Extracted text for {} ({}) was stored concurrently by another node", objectKey, etag);
+            } catch (Exception e) {
+                logger.warn("Could not persist extracted text for {}: {}", objectKey, e.getMessage());
+            }
+        }
+        return text;
+    }
+
+    private static String await(CompletableFuture<String> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the text of deleted objects, in every version, from both tiers.
+     */
+    public void evict(Collection<String> objectKeys) {
+        if (objectKeys.isEmpty()) {
+            return;
+        }
+        removeFromMemory(Set.copyOf(objectKeys));
+        extractedTextRepository.deleteByObjectKeys(objectKeys);
+    }
+
+    private synchronized void removeFromMemory(Set<String> objectKeys) {
+        Iterator<Map.Entry<String, String>> it = memory.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            String key = entry.getKey();
+            if (objectKeys.contains(key.substring(0, key.lastIndexOf('|')))) {
+                memoryChars -= entry.getValue().length();
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized String getFromMemory(String key) {
+        return memory.get(key);
+    }
+
+    private synchronized void putInMemory(String key, String text) {
+        if (text.length() > maxChars) {
+            return; // Would evict everything else; the database tier still has it
+        }
+        String previous = memory.put(key, text);
+        if (previous != null) {
+            memoryChars -= previous.length();
+        }
+        memoryChars += text.length();
+
+        Iterator<Map.Entry<String, String>> it = memory.entrySet().iterator();
+        while (memoryChars > maxChars && it.hasNext()) {
+            Map.Entry<String, String> eldest = it.next();
+            memoryChars -= eldest.getValue().length();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    public synchronized long getMemoryChars() {
+        return memoryChars;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.newmoodle.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Entry point of an isolated extraction child JVM started by {@link ExtractionWorkerPool}.
+ * <p>
+ * Protocol over stdin/stdout, one request at a time:
+ * request = UTF extension, UTF absolute path of the spooled file;
+ * response = boolean ok, int page count (-1 if unknown), int length, UTF-8 bytes (extracted text or error message).
+ * Anything written to {@code System.out} (e.g. logging) is redirected to stderr so it cannot
+ * corrupt the protocol stream. The process exits when stdin is closed.
+ */
+public final class ExtractionWorkerMain {
+
+    private ExtractionWorkerMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        OutputStream protocolOut = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out));
+        System.setOut(System.err);
+
+        int parallelism = Integer.getInteger("extraction.pdf.parallelism", 1);
+        int pdfMaxChars = Integer.getInteger("extraction.pdf.max-chars", 400_000);
+        int docxMaxChars = Integer.getInteger("extraction.docx.max-chars", 400_000);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        // Same wiring as ExtractionConfig for in-process extraction
+        DocumentTextExtractor extractor = new DocumentTextExtractor(
+                new PdfTextExtractor(pool,
+                        Integer.getInteger("extraction.pdf.max-pages", 150),
+                        pdfMaxChars,
+                        Integer.getInteger("extraction.pdf.pages-per-task", 16),
+                        Boolean.getBoolean("extraction.pdf.memory-mapped")),
+                new DocxTextExtractor(docxMaxChars),
+                Math.max(pdfMaxChars, docxMaxChars));
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(protocolOut);
+        while (true) {
+            String extension;
+            String path;
+            try {
+                extension = in.readUTF();
+                path = in.readUTF();
+            } catch (EOFException e) {
+                break; // Parent closed the pipe
+            }
+
+            boolean ok;
+            int pageCount = -1;
+            String payload;
+            try {
+                ExtractedDocument document = extractor.extractDocument(Path.of(path), extension);
+                payload = document.text();
+                if (document.pageCount() != null) {
+                    pageCount = document.pageCount();
+                }
+                ok = true;
+            } catch (Exception e) {
+                payload = e.getClass().getSimpleName() + ": " + e.getMessage();
+                ok = false;
+            }
+
+            byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+            out.writeBoolean(ok);
+            out.writeInt(pageCount);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.flush();
+        }
+        pool.shutdownNow();
+    }
+}
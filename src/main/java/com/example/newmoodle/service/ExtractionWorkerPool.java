@@ -0,0 +1,266 @@
+package com.example.newmoodle.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs document parsing in a pool of reusable child JVMs (see {@link ExtractionWorkerMain}), so a
+ * malicious or huge PDF/DOCX can exhaust at most one worker's heap, never the application's.
+ * <ul>
+ *     <li>Each worker gets its own {@code -Xmx} and exits on OutOfMemoryError.</li>
+ *     <li>A document that exceeds the timeout gets its worker killed.</li>
+ *     <li>Workers are recycled after a fixed number of documents.</li>
+ *     <li>At most {@code workers + queue-capacity} callers are admitted; the rest are rejected
+ *         immediately instead of piling up.</li>
+ * </ul>
+ * Callers only hand over the path of an already spooled file and wait for the text.
+ */
+@Component
+public class ExtractionWorkerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionWorkerPool.class);
+    private static final String BOOT_LAUNCHER = "org.springframework.boot.loader.launch.PropertiesLauncher";
+
+    @Value("${extraction.isolation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${extraction.isolation.workers:2}")
+    private int workerCount;
+
+    @Value("${extraction.isolation.worker-heap:256m}")
+    private String workerHeap;
+
+    @Value("${extraction.isolation.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    @Value("${extraction.isolation.max-documents-per-worker:100}")
+    private int maxDocumentsPerWorker;
+
+    @Value("${extraction.isolation.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${extraction.pdf.max-pages:150}")
+    private int pdfMaxPages;
+
+    @Value("${extraction.pdf.pages-per-task:16}")
+    private int pdfPagesPerTask;
+
+    @Value("${extraction.pdf.max-chars:400000}")
+    private int pdfMaxChars;
+
+    @Value("${extraction.docx.max-chars:400000}")
+    private int docxMaxChars;
+
+    @Value("${extraction.pdf.memory-mapped:false}")
+    private boolean pdfMemoryMapped;
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "extraction-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<Worker> allWorkers = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Worker> idleWorkers = new LinkedBlockingQueue<>();
+    private Semaphore admission;
+    private Semaphore workerSlots;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Extracts text from a spooled file in a child JVM. Blocks until the text is ready,
+     * the document times out, or the worker crashes.
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public ExtractedDocument extract(Path file, String extension) throws IOException, InterruptedException {
+        if (!admission.tryAcquire()) {
+            throw new RejectedExecutionException("Document extraction queue is full, try again later");
+        }
+        try {
+            Worker worker = acquireWorker();
+            boolean healthy = false;
+            try {
+                ExtractedDocument document = worker.extract(file, extension, timeoutSeconds);
+                healthy = true;
+                return document;
+            } catch (DocumentRejectedException e) {
+                healthy = true; // The document was bad, the worker is fine
+                throw e;
+            } finally {
+                releaseWorker(worker, healthy);
+            }
+        } finally {
+            admission.release();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        workerSlots = new Semaphore(Math.max(1, workerCount));
+        admission = new Semaphore(Math.max(1, workerCount) + Math.max(0, queueCapacity));
+    }
+
+    private Worker acquireWorker() throws IOException, InterruptedException {
+        workerSlots.acquire();
+        Worker worker = idleWorkers.poll();
+        if (worker != null && worker.isAlive()) {
+            return worker;
+        }
+        if (worker != null) {
+            discard(worker);
+        }
+        try {
+            return spawn();
+        } catch (IOException | RuntimeException e) {
+            workerSlots.release();
+            throw e;
+        }
+    }
+
+    private void releaseWorker(Worker worker, boolean healthy) {
+        try {
+            if (!healthy || !worker.isAlive() || worker.documents >= maxDocumentsPerWorker) {
+                discard(worker);
+            } else {
+                idleWorkers.offer(worker);
+            }
+        } finally {
+            workerSlots.release();
+        }
+    }
+
+    private Worker spawn() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + workerHeap);
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.add("-XX:+UseSerialGC");
+        command.add("-Dextraction.pdf.parallelism=1");
+        command.add("-Dextraction.pdf.max-pages=" + pdfMaxPages);
+        command.add("-Dextraction.pdf.pages-per-task=" + pdfPagesPerTask);
+        command.add("-Dextraction.pdf.memory-mapped=" + pdfMemoryMapped);
+        command.add("-Dextraction.pdf.max-chars=" + pdfMaxChars);
+        command.add("-Dextraction.docx.max-chars=" + docxMaxChars);
+
+        String classPath = System.getProperty("java.class.path");
+        command.add("-cp");
+        command.add(classPath);
+        if (!classPath.contains(File.pathSeparator) && classPath.endsWith(".jar")) {
+            // Running from the Spring Boot fat jar: application classes live under BOOT-INF
+            command.add("-Dloader.main=" + ExtractionWorkerMain.class.getName());
+            command.add(BOOT_LAUNCHER);
+        } else {
+            command.add(ExtractionWorkerMain.class.getName());
+        }
+
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        Worker worker = new Worker(process);
+        allWorkers.add(worker);
+        logger.info("Started extraction worker pid {} (-Xmx{})", process.pid(), workerHeap);
+        return worker;
+    }
+
+    private void discard(Worker worker) {
+        allWorkers.remove(worker);
+        worker.destroy();
+        logger.info("Retired extraction worker pid {} after {} documents", worker.process.pid(), worker.documents);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        watchdog.shutdownNow();
+        allWorkers.forEach(Worker::destroy);
+        allWorkers.clear();
+    }
+
+    /**
+     * The worker answered normally but could not parse the document.
+     */
+    private static final class DocumentRejectedException extends IOException {
+        private DocumentRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private final class Worker {
+        private final Process process;
+        private final DataOutputStream requests;
+        private final DataInputStream responses;
+        private int documents;
+
+        private Worker(Process process) {
+            this.process = process;
+            this.requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.responses = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        private boolean isAlive() {
+            return process.isAlive();
+        }
+
+        private ExtractedDocument extract(Path file, String extension, long timeoutSeconds) throws IOException {
+            documents++;
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> kill = watchdog.schedule(() -> {
+                timedOut.set(true);
+                process.destroyForcibly();
+            }, timeoutSeconds, TimeUnit.SECONDS);
+            try {
+                requests.writeUTF(extension);
+                requests.writeUTF(file.toAbsolutePath().toString());
+                requests.flush();
+
+                boolean ok = responses.readBoolean();
+                int pageCount = responses.readInt();
+                byte[] payload = new byte[responses.readInt()];
+                responses.readFully(payload);
+                String text = new String(payload, StandardCharsets.UTF_8);
+                if (!ok) {
+                    throw new DocumentRejectedException("Extraction failed in worker: " + text);
+                }
+                return new ExtractedDocument(text, pageCount >= 0 ? pageCount : null);
+            } catch (EOFException e) {
+                if (timedOut.get()) {
+                    throw new IOException("Document extraction timed out after " + timeoutSeconds + "s", e);
+                }
+                throw new IOException("Extraction worker died (exit code " + exitCode() + ")", e);
+            } finally {
+                kill.cancel(false);
+            }
+        }
+
+        private String exitCode() {
+            try {
+                return process.waitFor(1, TimeUnit.SECONDS) ? String.valueOf(process.exitValue()) : "unknown";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "unknown";
+            }
+        }
+
+        private void destroy() {
+            try {
+                requests.close(); // EOF on stdin lets the worker exit cleanly
+            } catch (IOException ignored) {
+                // Already gone
+            }
+            process.destroy();
+        }
+    }
+}
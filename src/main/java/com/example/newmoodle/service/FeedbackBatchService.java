@@ -0,0 +1,108 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.dto.FeedbackBatchDto;
+import com.example.newmoodle.model.*;
+import com.example.newmoodle.repository.FeedbackBatchRepository;
+import com.example.newmoodle.repository.FeedbackJobRepository;
+import com.example.newmoodle.repository.SubmissionRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Generates AI feedback for every PENDING submission of an assignment in one go.
+ * Each submission is queued as an ordinary feedback job, so the job workers bound the parallelism,
+ * a submission that already has an active job (from another batch or a single request) is not
+ * generated twice, and the batch's progress is read from the job table on any node.
+ */
+@Service
+@RequiredArgsConstructor
+public class FeedbackBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedbackBatchService.class);
+
+    private final SubmissionRepository submissionRepository;
+    private final AssignmentService assignmentService;
+    private final FeedbackJobService feedbackJobService;
+    private final FeedbackJobRepository feedbackJobRepository;
+    private final FeedbackBatchRepository feedbackBatchRepository;
+
+    @Transactional
+    public FeedbackBatchDto startBatch(Long assignmentId, User teacher, Language language) {
+        Assignment assignment = assignmentService.getAssignmentById(assignmentId);
+        if (!assignment.getTeacher().equals(teacher)) {
+            throw new AccessDeniedException("User is not the teacher of this assignment and cannot generate feedback for it.");
+        }
+
+        List<Long> jobIds = submissionRepository
+                .findByAssignmentIdAndStatus(assignmentId, SubmissionStatus.PENDING)
+                .stream()
+                .map(submission -> feedbackJobService.enqueue(submission.getId(), teacher, language).getId())
+                .distinct()
+                .toList();
+
+        FeedbackBatch batch = feedbackBatchRepository.save(FeedbackBatch.builder()
+                .id(UUID.randomUUID().toString())
+                .assignmentId(assignmentId)
+                .teacherId(teacher.getId())
+                .language(language)
+                .jobIds(jobIds)
+                .startedAt(LocalDateTime.now())
+                .build());
+        logger.info("Started feedback batch {} for assignment {}: {} pending submissions queued",
+                batch.getId(), assignmentId, jobIds.size());
+        return mapToFeedbackBatchDto(batch, feedbackJobRepository.findAllById(jobIds));
+    }
+
+    @Transactional(readOnly = true)
+    public FeedbackBatchDto getBatch(String batchId) {
+        FeedbackBatch batch = feedbackBatchRepository.findById(batchId)
+                .orElseThrow(() -> new NoSuchElementException(String.format("Feedback batch '%s' not found", batchId)));
+        return mapToFeedbackBatchDto(batch, feedbackJobRepository.findAllById(batch.getJobIds()));
+    }
+
+    private FeedbackBatchDto mapToFeedbackBatchDto(FeedbackBatch batch, List<FeedbackJob> jobs) {
+        int succeeded = 0;
+        int inProgress = 0;
+        Map<Long, String> failures = new HashMap<>();
+        for (FeedbackJob job : jobs) {
+            switch (job.getStatus()) {
+                case COMPLETED -> succeeded++;
+                case RUNNING -> inProgress++;
+                case FAILED -> failures.put(job.getSubmissionId(),
+                        job.getLastError() != null ? job.getLastError() : "Feedback generation failed");
+                default -> { }
+            }
+        }
+        boolean finished = succeeded + failures.size() == jobs.size();
+        LocalDateTime finishedAt = !finished ? null : jobs.stream()
+                .map(FeedbackJob::getUpdatedAt)
+                .max(Comparator.naturalOrder())
+                .orElse(batch.getStartedAt());
+
+        return FeedbackBatchDto.builder()
+                .id(batch.getId())
+                .assignmentId(batch.getAssignmentId())
+                .language(batch.getLanguage())
+                .finished(finished)
+                .total(jobs.size())
+                .succeeded(succeeded)
+                .failed(failures.size())
+                .inProgress(inProgress)
+                .failures(failures)
+                .startedAt(batch.getStartedAt())
+                .finishedAt(finishedAt)
+                .build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.dto.FeedbackJobDto;
+import com.example.newmoodle.model.*;
+import com.example.newmoodle.repository.FeedbackJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+@Service
+@RequiredArgsConstructor
+public class FeedbackJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedbackJobService.class);
+    private static final EnumSet<FeedbackJobStatus> ACTIVE_STATUSES = EnumSet.of(FeedbackJobStatus.QUEUED, FeedbackJobStatus.RUNNING);
+
+    private final FeedbackJobRepository feedbackJobRepository;
+    private final SubmissionService submissionService;
+    private final FeedbackService feedbackService;
+
+    // "pid@host" is unique enough to tell nodes apart in locked_by
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Value("${feedback.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${feedback.jobs.stale-after-minutes:10}")
+    private long staleAfterMinutes;
+
+    /**
+     * Queues feedback generation for a submission and returns immediately.
+     * If a job for the submission in the requested language is already queued or running, that job
+     * is returned instead; one in another language does not count.
+     * If a background draft in the requested language exists, it is published and returned as an
+     * already COMPLETED job.
+     */
+    @Transactional
+    public FeedbackJob enqueue(Long submissionId, User teacher, Language language) {
+        // Fails fast with 400 for unknown submissions; the row lock keeps concurrent enqueues from both inserting
+        submissionService.lockSubmission(submissionId);
+
+        Feedback draft = feedbackService.publishDraft(submissionId, teacher, language);
+        if (draft != null) {
+            LocalDateTime now = LocalDateTime.now();
+            return feedbackJobRepository.save(FeedbackJob.builder()
+                    .submissionId(submissionId)
+                    .teacherId(teacher.getId())
+                    .language(language)
+                    .status(FeedbackJobStatus.COMPLETED)
+                    .feedbackId(draft.getId())
+                    .attempts(0)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+
+        return feedbackJobRepository
+                .findFirstBySubmissionIdAndLanguageAndStatusInOrderByCreatedAtDesc(submissionId, language, ACTIVE_STATUSES)
+                .orElseGet(() -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    FeedbackJob job = FeedbackJob.builder()
+                            .submissionId(submissionId)
+                            .teacherId(teacher.getId())
+                            .language(language)
+                            .status(FeedbackJobStatus.QUEUED)
+                            .attempts(0)
+                            .createdAt(now)
+                            .updatedAt(now)
+                            .build();
+                    FeedbackJob saved = feedbackJobRepository.save(job);
+                    logger.info("Queued feedback job {} for submission {} ({})", saved.getId(), submissionId, language);
+                    return saved;
+                });
+    }
+
+    /**
+     * Claims up to {@code limit} jobs for this node. The row locks only live for this short
+     * transaction; afterwards the RUNNING status and locked_at timestamp act as the lease.
+     */
+    @Transactional
+    public List<FeedbackJob> claim(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<FeedbackJob> locked = feedbackJobRepository.lockNextRunnable(now, now.minusMinutes(staleAfterMinutes), limit);
+
+        List<FeedbackJob> claimed = new ArrayList<>(locked.size());
+        for (FeedbackJob job : locked) {
+            if (job.getAttempts() >= maxAttempts) {
+                // A node died while running this job too many times; stop retrying it
+                job.setStatus(FeedbackJobStatus.FAILED);
+                job.setLastError("Gave up after " + job.getAttempts() + " attempts");
+                job.setUpdatedAt(now);
+                continue;
+            }
+            job.setStatus(FeedbackJobStatus.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLockedBy(nodeId);
+            job.setLockedAt(now);
+            job.setUpdatedAt(now);
+            claimed.add(job);
+        }
+        return claimed;
+    }
+
+    /**
+     * Extends the lease of jobs this node is still running. Called periodically by the worker so a
+     * long generation is not mistaken for a dead node's job.
+     */
+    public void renewLeases(Collection<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        int renewed = feedbackJobRepository.renewLocks(jobIds, nodeId, LocalDateTime.now());
+        if (renewed < jobIds.size()) {
+            logger.warn("Renewed {} of {} feedback job leases; the others were reclaimed", renewed, jobIds.size());
+        }
+    }
+
+    /**
+     * Records the result of a claimed run. Ignored if the job was reclaimed after this run's lease
+     * lapsed, so a slow run cannot overwrite the result of the run that replaced it.
+     */
+    public void markCompleted(FeedbackJob claimed, Long feedbackId) {
+        int updated = feedbackJobRepository.completeIfOwned(claimed.getId(), claimed.getLockedBy(), claimed.getAttempts(),
+                feedbackId, LocalDateTime.now());
+        if (updated == 0) {
+            logger.warn("Feedback job {} was reclaimed before attempt {} completed; result not recorded",
+                    claimed.getId(), claimed.getAttempts());
+        }
+    }
+
+    /**
+     * Records a failed run. Retryable failures put the job back in the queue until
+     * {@code feedback.jobs.max-attempts} is reached. Ignored if the job was reclaimed meanwhile.
+     */
+    public void markFailed(FeedbackJob claimed, String error, boolean retryable) {
+        markFailed(claimed, error, retryable, null);
+    }
+
+    /**
+     * As {@link #markFailed(FeedbackJob, String, boolean)}; a re-queued job is not claimed again
+     * before {@code retryAfter} has passed (null: right away).
+     */
+    public void markFailed(FeedbackJob claimed, String error, boolean retryable, Duration retryAfter) {
+        boolean retry = retryable && claimed.getAttempts() < maxAttempts;
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextAttemptAt = retry && retryAfter != null ? now.plus(retryAfter) : null;
+        int updated = feedbackJobRepository.failIfOwned(claimed.getId(), claimed.getLockedBy(), claimed.getAttempts(),
+                retry ? FeedbackJobStatus.QUEUED : FeedbackJobStatus.FAILED, error, nextAttemptAt, now);
+        if (updated == 0) {
+            logger.warn("Feedback job {} was reclaimed before attempt {} failed; failure not recorded",
+                    claimed.getId(), claimed.getAttempts());
+            return;
+        }
+        logger.warn("Feedback job {} failed (attempt {}/{}), {}: {}", claimed.getId(), claimed.getAttempts(), maxAttempts,
+                retry ? "re-queued" : "giving up", error);
+    }
+
+    public FeedbackJob getJobById(Long jobId) {
+        return feedbackJobRepository.findById(jobId).orElseThrow(()
+                -> new NoSuchElementException(String.format("Feedback job with id '%d' not found", jobId)));
+    }
+
+    @Transactional(readOnly = true)
+    public FeedbackJobDto getJobDto(Long jobId) {
+        return mapToFeedbackJobDto(getJobById(jobId));
+    }
+
+    public FeedbackJobDto mapToFeedbackJobDto(FeedbackJob job) {
+        if (job == null) return null;
+        return FeedbackJobDto.builder()
+                .id(job.getId())
+                .submissionId(job.getSubmissionId())
+                .language(job.getLanguage())
+                .status(job.getStatus())
+                .attempts(job.getAttempts())
+                .error(job.getLastError())
+                .feedback(job.getFeedbackId() != null ? feedbackService.getFeedbackDto(job.getFeedbackId()) : null)
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .build();
+    }
+}
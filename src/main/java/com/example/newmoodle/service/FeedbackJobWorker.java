@@ -0,0 +1,114 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.model.Feedback;
+import com.example.newmoodle.model.FeedbackJob;
+import com.example.newmoodle.model.User;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the feedback_job table and runs claimed jobs on {@code feedbackJobExecutor}.
+ * Every node runs its own worker; SKIP LOCKED keeps them from claiming the same rows.
+ */
+@Component
+@RequiredArgsConstructor
+public class FeedbackJobWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedbackJobWorker.class);
+
+    private final FeedbackJobService feedbackJobService;
+    private final FeedbackService feedbackService;
+    private final UserService userService;
+    @Qualifier("feedbackJobExecutor")
+    private final ThreadPoolTaskExecutor feedbackJobExecutor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    @Value("${feedback.jobs.worker-threads:4}")
+    private int workerThreads;
+
+    @Scheduled(fixedDelayString = "${feedback.jobs.poll-interval-ms:2000}")
+    public void poll() {
+        int capacity = workerThreads - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+
+        List<FeedbackJob> jobs;
+        try {
+            jobs = feedbackJobService.claim(capacity);
+        } catch (Exception e) {
+            logger.error("Failed to claim feedback jobs: {}", e.getMessage(), e);
+            return;
+        }
+
+        for (FeedbackJob job : jobs) {
+            inFlight.incrementAndGet();
+            try {
+                feedbackJobExecutor.execute(() -> {
+                    try {
+                        run(job);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.decrementAndGet();
+                feedbackJobService.markFailed(job, "Worker rejected job: " + e.getMessage(), true);
+            }
+        }
+    }
+
+    /**
+     * Renews the lease of every job running on this node, well within {@code feedback.jobs.stale-after-minutes}.
+     */
+    @Scheduled(fixedDelayString = "${feedback.jobs.heartbeat-interval-ms:60000}")
+    public void heartbeat() {
+        try {
+            feedbackJobService.renewLeases(List.copyOf(running));
+        } catch (Exception e) {
+            logger.error("Failed to renew feedback job leases: {}", e.getMessage(), e);
+        }
+    }
+
+    private void run(FeedbackJob job) {
+        logger.info("Running feedback job {} for submission {} (attempt {})", job.getId(), job.getSubmissionId(), job.getAttempts());
+        running.add(job.getId());
+        try {
+            User teacher = userService.findUserById(job.getTeacherId());
+            Feedback feedback = feedbackService.generateFeedback(job.getSubmissionId(), teacher, job.getLanguage());
+            feedbackJobService.markCompleted(job, feedback.getId());
+            logger.info("Feedback job {} completed with feedback {}", job.getId(), feedback.getId());
+        } catch (CancellationException e) {
+            // Interrupted by a shutdown or a lease handover, not by the job itself
+            logger.warn("Feedback job {} was interrupted: {}", job.getId(), e.getMessage());
+            feedbackJobService.markFailed(job, e.getMessage(), true);
+        } catch (IllegalArgumentException | IllegalStateException | NoSuchElementException e) {
+            // Bad input (missing file, unsupported type, deleted submission): retrying will not help
+            feedbackJobService.markFailed(job, e.getMessage(), false);
+        } catch (LlmClientException e) {
+            // A rejected request (4xx) fails the same way next time; an overloaded provider says when to come back
+            logger.error("Feedback job {} failed: {}", job.getId(), e.getMessage(), e);
+            feedbackJobService.markFailed(job, e.getMessage(), e.isRetryable(), e.getRetryAfter());
+        } catch (Exception e) {
+            logger.error("Feedback job {} failed: {}", job.getId(), e.getMessage(), e);
+            feedbackJobService.markFailed(job, e.getMessage(), true);
+        } finally {
+            running.remove(job.getId());
+        }
+    }
+}
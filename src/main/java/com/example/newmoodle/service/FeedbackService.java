@@ -3,25 +3,38 @@ package com.example.newmoodle.service;
 import com.example.newmoodle.dto.FeedbackDto;
 import com.example.newmoodle.mapper.FeedbackMapper;
 import com.example.newmoodle.model.*;
+import com.example.newmoodle.repository.FeedbackGenerationLockRepository;
 import com.example.newmoodle.repository.FeedbackRepository;
-import com.openai.client.OpenAIClient;
-import com.openai.client.okhttp.OpenAIOkHttpClient;
-import com.openai.models.ChatModel;
-import com.openai.models.chat.completions.ChatCompletion;
-import com.openai.models.chat.completions.ChatCompletionCreateParams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils; // Import StringUtils
 
 import java.io.IOException;
-import java.util.Base64;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 // No longer need List here as FileService handles it
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -32,9 +45,38 @@ public class FeedbackService {
     private final FeedbackRepository feedbackRepository;
     private final FileService fileService; // Assume FileService is autowired
     private final FeedbackMapper feedbackMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final LlmClient llmClient;
+    private final AssignmentContextCache assignmentContextCache;
+    private final ImagePreprocessor imagePreprocessor;
+    private final FeedbackGenerationLockRepository generationLockRepository;
+    private final MeterRegistry meterRegistry;
 
-    @Value("${openai.api.key}")
-    private String openaiApiKey;
+    private final AtomicInteger interactiveInFlight = new AtomicInteger();
+    private final Map<GenerationKey, CompletableFuture<Feedback>> inFlight = new ConcurrentHashMap<>();
+    // Owner token -> submission id of every generation lease this node holds
+    private final Map<String, Long> heldLeases = new ConcurrentHashMap<>();
+    // "pid@host" is unique enough to tell nodes apart in locked_by
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Value("${feedback.generation.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${feedback.generation.lock-poll-ms:1000}")
+    private long lockPollMs;
+
+    @Value("${feedback.generation.max-wait-seconds:600}")
+    private long maxWaitSeconds;
+
+    private Counter generated;
+    private Counter coalesced;
+    private Counter reused;
+
+    @Value("${llm.text-model:gpt-4o-mini}")
+    private String textModel;
+
+    @Value("${llm.vision-model:gpt-4.1-mini}")
+    private String visionModel;
 
     // Updated prompt template to include Assignment File Content
     private static final String PROMPT_TEMPLATE = """
@@ -69,14 +111,264 @@ public class FeedbackService {
             """;
 
 
+    @Transactional(readOnly = true)
+    public FeedbackDto getFeedbackDto(Long feedbackId) {
+        Feedback feedback = feedbackRepository.findById(feedbackId)
+                .orElseThrow(() -> new NoSuchElementException(String.format("Feedback with id '%d' not found", feedbackId)));
+        return feedbackMapper.feedbackToFeedbackDto(feedback);
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        generated = Counter.builder("feedback.requests").tag("outcome", "generated").register(meterRegistry);
+        coalesced = Counter.builder("feedback.requests").tag("outcome", "coalesced").register(meterRegistry);
+        reused = Counter.builder("feedback.requests").tag("outcome", "reused").register(meterRegistry);
+    }
+
+    /**
+     * Generates and stores AI feedback for a submission, or returns the feedback it already has in
+     * this language (publishing a matching draft). Concurrent calls for the same submission and
+     * language on this node share one generation; across nodes, a lease row in
+     * feedback_generation_lock makes sure only one node calls the LLM for a submission at a time.
+     * Deliberately not {@code @Transactional}: the file download, text extraction and OpenAI round trip
+     * run without holding a database connection. Only the final insert/status update is transactional.
+     */
+    public Feedback generateFeedback(Long submissionId, User teacher, Language language) throws Exception {
+        return generateShared(submissionId, teacher, language, null, null);
+    }
+
+    /**
+     * Like {@link #generateFeedback}, but streams the completion: text deltas are passed to
+     * {@code onDelta} as the LLM produces them. Feedback that already exists, or that another
+     * request on this node was generating, is delivered as a single delta. At the end the text is
+     * stored and the submission marked REVIEWED, exactly as for {@link #generateFeedback}.
+     * @throws CancellationException if {@code cancellation} was triggered; nothing is stored then.
+     */
+    public Feedback streamFeedback(Long submissionId, User teacher, Language language,
+                                   Consumer<String> onDelta, StreamCancellation cancellation) throws Exception {
+        AtomicBoolean streamed = new AtomicBoolean();
+        Feedback feedback = generateShared(submissionId, teacher, language, delta -> {
+            streamed.set(true);
+            onDelta.accept(delta);
+        }, cancellation);
+        if (!streamed.get()) {
+            onDelta.accept(feedback.getAiGenerated());
+        }
+        return feedback;
+    }
+
+    private Feedback generateShared(Long submissionId, User teacher, Language language,
+                                    Consumer<String> onDelta, StreamCancellation cancellation) throws Exception {
+        GenerationKey key = new GenerationKey(submissionId, language);
+        while (true) {
+            CompletableFuture<Feedback> mine = new CompletableFuture<>();
+            CompletableFuture<Feedback> existing = inFlight.putIfAbsent(key, mine);
+            if (existing != null) {
+                coalesced.increment();
+                logger.info("Feedback for submission {} ({}) is already being generated, waiting for it", submissionId, language);
+                try {
+                    return await(existing, submissionId);
+                } catch (CancellationException e) {
+                    continue; // The streaming client we waited on went away; generate it ourselves
+                }
+            }
+
+            interactiveInFlight.incrementAndGet();
+            try {
+                Feedback feedback = generateExclusively(submissionId, teacher, language, onDelta, cancellation);
+                mine.complete(feedback);
+                return feedback;
+            } catch (Exception e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, mine);
+                interactiveInFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private Feedback generateExclusively(Long submissionId, User teacher, Language language,
+                                         Consumer<String> onDelta, StreamCancellation cancellation) throws Exception {
+        Feedback current = findReusable(submissionId, teacher, language);
+        if (current != null) {
+            return current;
+        }
+
+        String owner = acquireLease(submissionId);
+        try {
+            // Another node may have finished the same request while we waited for the lease
+            current = findReusable(submissionId, teacher, language);
+            if (current != null) {
+                return current;
+            }
+            Submission submission = submissionService.getSubmissionWithAssignment(submissionId);
+            LlmRequest request = buildRequest(submission, language);
+            String generatedContent = onDelta == null
+                    ? llmClient.complete(request)
+                    : llmClient.stream(request, onDelta, cancellation);
+            generated.increment();
+            return saveFeedback(submission, teacher, generatedContent, language);
+        } finally {
+            releaseLease(submissionId, owner);
+        }
+    }
+
+    /**
+     * The submission's feedback if it can be returned as is: published in this language (or in an
+     * unknown one, for feedback stored before languages were recorded), or a draft in this
+     * language, which gets published.
+     */
+    private Feedback findReusable(Long submissionId, User teacher, Language language) {
+        Feedback current = transactionTemplate.execute(status -> {
+            Feedback feedback = feedbackRepository.findBySubmissionId(submissionId).orElse(null);
+            if (feedback == null) {
+                return null;
+            }
+            if (!feedback.isDraft()) {
+                return feedback.getLanguage() == null || feedback.getLanguage() == language ? feedback : null;
+            }
+            return publishDraft(submissionId, teacher, language);
+        });
+        if (current != null) {
+            reused.increment();
+        }
+        return current;
+    }
+
+    /**
+     * Waits until this node holds the submission's generation lease.
+     * @return the owner token to release it with.
+     */
+    private String acquireLease(Long submissionId) throws Exception {
+        String owner = nodeId + "/" + UUID.randomUUID();
+        long deadline = System.currentTimeMillis() + leaseSeconds * 1000;
+        while (!tryAcquireLease(submissionId, owner)) {
+            if (System.currentTimeMillis() >= deadline) {
+                throw new Exception("Feedback for submission " + submissionId + " is still being generated elsewhere, try again later");
+            }
+            Thread.sleep(lockPollMs);
+        }
+        return owner;
+    }
+
+    private boolean tryAcquireLease(Long submissionId, String owner) {
+        LocalDateTime now = LocalDateTime.now();
+        if (generationLockRepository.tryAcquire(submissionId, owner, now.plusSeconds(leaseSeconds), now) == 0) {
+            return false;
+        }
+        heldLeases.put(owner, submissionId);
+        return true;
+    }
+
+    private void releaseLease(Long submissionId, String owner) {
+        heldLeases.remove(owner);
+        generationLockRepository.release(submissionId, owner);
+    }
+
+    /**
+     * Renews the lease of every generation running on this node, well within {@code feedback.generation.lease-seconds}:
+     * an LLM call may outlast the lease, and another node must not start the same generation meanwhile.
+     */
+    @Scheduled(fixedDelayString = "${feedback.generation.heartbeat-interval-ms:60000}")
+    public void renewLeases() {
+        List<String> owners = List.copyOf(heldLeases.keySet());
+        if (owners.isEmpty()) {
+            return;
+        }
+        try {
+            int renewed = generationLockRepository.renew(owners, LocalDateTime.now().plusSeconds(leaseSeconds));
+            if (renewed < owners.size()) {
+                logger.warn("Renewed {} of {} feedback generation leases; the others expired or were released", renewed, owners.size());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to renew feedback generation leases: {}", e.getMessage(), e);
+        }
+    }
+
+    private Feedback await(CompletableFuture<Feedback> future, Long submissionId) throws Exception {
+        try {
+            return future.get(maxWaitSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        } catch (TimeoutException e) {
+            throw new Exception("Feedback for submission " + submissionId + " is still being generated, try again later");
+        }
+    }
+
+    private record GenerationKey(Long submissionId, Language language) {
+    }
+
+    /**
+     * Generates an unpublished draft in the assignment's draft language, for {@link DraftFeedbackWorker}.
+     * Does nothing if the submission already has feedback (published or draft).
+     * @return the draft, or null if none was generated.
+     */
+    public Feedback generateDraft(Long submissionId) throws Exception {
+        if (feedbackRepository.findBySubmissionId(submissionId).isPresent()) {
+            return null;
+        }
+        String owner = nodeId + "/" + UUID.randomUUID();
+        if (!tryAcquireLease(submissionId, owner)) {
+            return null; // A teacher's request is generating it right now
+        }
+        try {
+            Submission submission = submissionService.getSubmissionWithAssignment(submissionId);
+            Assignment assignment = submission.getAssignment();
+            Language language = assignment.getDraftLanguage() != null ? assignment.getDraftLanguage() : Language.ENGLISH;
+            String generatedContent = llmClient.complete(buildRequest(submission, language));
+
+            return transactionTemplate.execute(status -> {
+                if (feedbackRepository.findBySubmissionId(submissionId).isPresent()) {
+                    return null;
+                }
+                return feedbackRepository.save(Feedback.builder()
+                        .submission(submission)
+                        .teacher(assignment.getTeacher())
+                        .aiGenerated(generatedContent)
+                        .language(language)
+                        .draft(true)
+                        .build());
+            });
+        } finally {
+            releaseLease(submissionId, owner);
+        }
+    }
+
+    /**
+     * Publishes the submission's draft if it was generated in the requested language: the teacher
+     * gets it instantly instead of waiting for a new generation.
+     * @return the published feedback, or null if there is no matching draft.
+     */
     @Transactional
-    public FeedbackDto generateFeedbackAndGetDto(Long submissionId, User teacher, Language language) throws Exception {
-        Feedback feedbackEntity = generateFeedbackInternal(submissionId, teacher, language);
-        return feedbackMapper.feedbackToFeedbackDto(feedbackEntity);
+    public Feedback publishDraft(Long submissionId, User teacher, Language language) {
+        Feedback draft = feedbackRepository.findBySubmissionId(submissionId)
+                .filter(Feedback::isDraft)
+                .filter(f -> f.getLanguage() == language)
+                .orElse(null);
+        if (draft == null) {
+            return null;
+        }
+        draft.setDraft(false);
+        draft.setTeacher(teacher);
+        submissionService.updateStatus(submissionId, SubmissionStatus.REVIEWED);
+        logger.info("Published pre-generated feedback draft {} for submission {}", draft.getId(), submissionId);
+        return draft;
     }
 
-    private Feedback generateFeedbackInternal(Long submissionId, User teacher, Language language) throws Exception {
-        Submission submission = submissionService.getSubmissionById(submissionId);
+    /**
+     * Number of teacher-requested generations currently running on this node; background drafts
+     * wait while it is above zero.
+     */
+    public int getInteractiveInFlight() {
+        return interactiveInFlight.get();
+    }
+
+    private LlmRequest buildRequest(Submission submission, Language language) throws Exception {
+        Long submissionId = submission.getId();
         Assignment assignment = submission.getAssignment();
 
         if (assignment == null) {
@@ -94,44 +386,47 @@ public class FeedbackService {
             throw new IllegalArgumentException("Submission has no file associated.");
         }
 
-        String generatedContent;
         // Use FileService method to check submission file type
         if (fileService.isImageFile(submissionFileKey)) {
             logger.info("Student submission is an image file (key: {}) – embedding as Base64.", submissionFileKey);
-            generatedContent = callOpenAIWithSubmissionImage(assignment, assignmentFileContent, submissionFileKey, language);
+            return buildImageRequest(assignment, assignmentFileContent, submissionFileKey, language);
         } else if (fileService.isTextExtractableFile(submissionFileKey)) {
             logger.info("Student submission is a text file (key: {}) – extracting text.", submissionFileKey);
+            String studentText;
             try {
-                String studentText = fileService.extractText(submissionFileKey);
-                generatedContent = callOpenAIWithSubmissionText(assignment, assignmentFileContent, studentText, language);
+                studentText = fileService.extractText(submissionFileKey);
             } catch (Exception e) {
                 logger.error("Failed to extract text from submission file key {}: {}", submissionFileKey, e.getMessage(), e);
-                // Decide how to handle: throw error, or generate feedback without submission content?
-                // Option: Generate feedback noting the failure
-                // generatedContent = callOpenAIWithSubmissionText(assignment, assignmentFileContent, "[Error extracting text from student submission]", language);
-                // Option: Throw an exception
                 throw new Exception("Failed to process student submission file: " + e.getMessage(), e);
             }
+            return buildTextRequest(assignment, assignmentFileContent, studentText, language);
         } else {
             logger.warn("Submission file key {} is of an unsupported type for feedback generation.", submissionFileKey);
-            throw new IllegalArgumentException("Unsupported file type for student submission: " + fileService.getExtension(submissionFileKey));
+            throw new IllegalArgumentException("Unsupported file type for student submission: " + fileService.getFileType(submissionFileKey));
         }
+    }
 
-
-        Feedback feedback = Feedback.builder()
-                .submission(submission)
-                .teacher(teacher)
-                .aiGenerated(generatedContent)
-                .build();
-
-        submission.setStatus(SubmissionStatus.REVIEWED);
-        submissionService.updateSubmission(submission);
-        return feedbackRepository.save(feedback);
+    /**
+     * Stores the feedback, replacing an earlier draft or feedback of the submission (there is at most one per submission).
+     */
+    private Feedback saveFeedback(Submission submission, User teacher, String generatedContent, Language language) {
+        return transactionTemplate.execute(status -> {
+            Feedback feedback = feedbackRepository.findBySubmissionId(submission.getId())
+                    .orElseGet(() -> Feedback.builder().submission(submission).build());
+            feedback.setTeacher(teacher);
+            feedback.setAiGenerated(generatedContent);
+            feedback.setLanguage(language);
+            feedback.setDraft(false);
+            Feedback saved = feedbackRepository.save(feedback);
+            submissionService.updateStatus(submission.getId(), SubmissionStatus.REVIEWED);
+            return saved;
+        });
     }
 
     /**
      * Retrieves and processes the content of the file attached to the assignment.
-     * Returns extracted text or a placeholder message.
+     * Returns extracted text or a placeholder message. Successful results are cached per assignment
+     * and file key, because every submission of the assignment needs the same context.
      */
     private String getAssignmentFileContent(Assignment assignment) {
         String assignmentFilePath = assignment.getFilePath();
@@ -139,32 +434,33 @@ public class FeedbackService {
             return "[No assignment file attached]";
         }
 
-        logger.info("Processing assignment file: {}", assignmentFilePath);
         try {
-            if (fileService.isTextExtractableFile(assignmentFilePath)) {
-                // Extract text from assignment file
-                return fileService.extractText(assignmentFilePath);
-            } else if (fileService.isImageFile(assignmentFilePath)) {
-                // If assignment file is an image, return placeholder (won't embed this one)
-                logger.warn("Assignment file {} is an image. Including placeholder in prompt.", assignmentFilePath);
-                return String.format("[Assignment file is an image: %s]", assignmentFilePath.substring(assignmentFilePath.lastIndexOf('/') + 1)); // Show filename
-            } else {
-                logger.warn("Assignment file {} is of an unsupported type. Including placeholder.", assignmentFilePath);
-                return String.format("[Assignment file of unsupported type: %s]", assignmentFilePath.substring(assignmentFilePath.lastIndexOf('/') + 1));
-            }
+            return assignmentContextCache.get(assignment.getId(), assignmentFilePath,
+                    () -> loadAssignmentFileContent(assignmentFilePath));
         } catch (Exception e) {
             logger.error("Failed to process assignment file key {}: {}. Including error message in prompt.", assignmentFilePath, e.getMessage(), e);
             return String.format("[Error processing assignment file %s: %s]", assignmentFilePath.substring(assignmentFilePath.lastIndexOf('/') + 1), e.getMessage());
         }
     }
 
+    private String loadAssignmentFileContent(String assignmentFilePath) throws Exception {
+        logger.info("Processing assignment file: {}", assignmentFilePath);
+        if (fileService.isTextExtractableFile(assignmentFilePath)) {
+            // Extract text from assignment file
+            return getSanitizedString(fileService.extractText(assignmentFilePath), "[No assignment file content]");
+        } else if (fileService.isImageFile(assignmentFilePath)) {
+            // If assignment file is an image, return placeholder (won't embed this one)
+            logger.warn("Assignment file {} is an image. Including placeholder in prompt.", assignmentFilePath);
+            return String.format("[Assignment file is an image: %s]", assignmentFilePath.substring(assignmentFilePath.lastIndexOf('/') + 1)); // Show filename
+        } else {
+            logger.warn("Assignment file {} is of an unsupported type. Including placeholder.", assignmentFilePath);
+            return String.format("[Assignment file of unsupported type: %s]", assignmentFilePath.substring(assignmentFilePath.lastIndexOf('/') + 1));
+        }
+    }
 
-    // Renamed for clarity: handles text-based submissions
-    private String callOpenAIWithSubmissionText(Assignment assignment, String assignmentFileContent, String studentText, Language language) {
-        OpenAIClient client = OpenAIOkHttpClient.builder()
-                .apiKey(openaiApiKey)
-                .build();
 
+    // Renamed for clarity: handles text-based submissions
+    private LlmRequest buildTextRequest(Assignment assignment, String assignmentFileContent, String studentText, Language language) {
         String assignmentDescription = getSanitizedString(assignment.getDescription(), "[No assignment description provided]");
         String processedAssignmentContent = getSanitizedString(assignmentFileContent, "[No assignment file content]"); // Already processed
         String submissionContent = getSanitizedString(studentText, "[No text extracted from student submission]");
@@ -178,27 +474,20 @@ public class FeedbackService {
                 languageName
         );
 
-        ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
-                .model(ChatModel.GPT_4O_MINI) // Model for text
-                .addUserMessage(prompt)
+        LlmRequest request = LlmRequest.builder()
+                .model(textModel) // Model for text
+                .prompt(prompt)
                 .temperature(0.7)
                 .maxCompletionTokens(2000) // Increased further for more context
                 .build();
 
-        logger.debug("Sending text prompt to OpenAI for assignment '{}', language '{}'", assignment.getTitle(), languageName);
-        ChatCompletion completion = client.chat().completions().create(params);
-        return extractContent(completion);
+        logger.debug("Built text prompt for assignment '{}', language '{}'", assignment.getTitle(), languageName);
+        return request;
     }
 
     // Renamed for clarity: handles image-based submissions
-    private String callOpenAIWithSubmissionImage(Assignment assignment, String assignmentFileContent, String submissionFileKey, Language language) throws IOException {
-        // 1) Download student submission image bytes
-        byte[] imageBytes = fileService.downloadFileAsBytes(submissionFileKey);
-        String mimeType = fileService.getMimeType(submissionFileKey);
-        String b64 = Base64.getEncoder().encodeToString(imageBytes);
-        String dataUri = "data:" + mimeType + ";base64," + b64;
-
-        // 2) Prepare the text part of the prompt
+    private LlmRequest buildImageRequest(Assignment assignment, String assignmentFileContent, String submissionFileKey, Language language) throws IOException {
+        // 1) Prepare the text part of the prompt
         String assignmentDescription = getSanitizedString(assignment.getDescription(), "[No assignment description provided]");
         String processedAssignmentContent = getSanitizedString(assignmentFileContent, "[No assignment file content]"); // Already processed
         String languageName = getLanguageName(language);
@@ -211,24 +500,21 @@ public class FeedbackService {
                 languageName
         );
 
-        // 3) Construct the final prompt including the student image markdown
-        String finalPromptWithImage = textPromptPart + "\n\n![](" + dataUri + ")";
+        // 2) Append the downscaled, re-encoded student image as a data URI, base64-encoded in place
+        StringBuilder finalPromptWithImage = new StringBuilder(textPromptPart).append("\n\n![](");
+        imagePreprocessor.appendDataUri(submissionFileKey, finalPromptWithImage);
+        finalPromptWithImage.append(')');
 
-        // 4) Send to GPT Vision model
-        OpenAIClient client = OpenAIOkHttpClient.builder()
-                .apiKey(openaiApiKey)
-                .build();
-
-        ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
-                .model(ChatModel.GPT_4_1_MINI)
-                .addUserMessage(finalPromptWithImage)
+        // 3) Send to GPT Vision model
+        LlmRequest request = LlmRequest.builder()
+                .model(visionModel)
+                .prompt(finalPromptWithImage.toString())
                 .temperature(0.7)
                 .maxCompletionTokens(2000)
                 .build();
 
-        logger.debug("Sending image prompt to OpenAI for assignment '{}', language '{}'", assignment.getTitle(), languageName);
-        ChatCompletion completion = client.chat().completions().create(params);
-        return extractContent(completion);
+        logger.debug("Built image prompt for assignment '{}', language '{}'", assignment.getTitle(), languageName);
+        return request;
     }
 
     // Helper to sanitize potentially null/blank strings for the prompt
@@ -237,21 +523,6 @@ public class FeedbackService {
     }
 
 
-    private String extractContent(ChatCompletion completion) {
-        // ... (implementation unchanged)
-        if (completion == null || completion.choices() == null || completion.choices().isEmpty()) {
-            logger.warn("Received empty or null completion from OpenAI.");
-            return "[Error: No content received from AI]";
-        }
-        return completion.choices().stream()
-                .map(choice -> choice.message().content())
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.joining("\n\n"));
-    }
-
     private String getLanguageName(Language language) {
         // ... (implementation unchanged)
         return switch (language) {
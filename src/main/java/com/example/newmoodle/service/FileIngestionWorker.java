@@ -0,0 +1,98 @@
+package com.example.newmoodle.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post-commit ingestion of uploaded files: extracts the text from the copy spooled during the
+ * upload and stores it (with page/word counts) so the teacher's feedback request starts with the
+ * text ready instead of downloading and parsing on the critical path. Runs on a bounded executor;
+ * when its queue is full the file is simply extracted on demand later.
+ */
+@Component
+@RequiredArgsConstructor
+public class FileIngestionWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileIngestionWorker.class);
+
+    private final FileService fileService;
+    @Qualifier("ingestionExecutor")
+    private final ThreadPoolTaskExecutor ingestionExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingestion.enabled:true}")
+    private boolean enabled;
+
+    private Counter ingested;
+    private Counter failed;
+    private Counter rejected;
+    private Timer duration;
+
+    @PostConstruct
+    void registerMetrics() {
+        ingested = Counter.builder("ingestion.files").tag("result", "ok").register(meterRegistry);
+        failed = Counter.builder("ingestion.files").tag("result", "failed").register(meterRegistry);
+        rejected = Counter.builder("ingestion.files").tag("result", "rejected").register(meterRegistry);
+        duration = Timer.builder("ingestion.duration").register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFileUploaded(FileUploadedEvent event) {
+        if (!enabled) {
+            deleteQuietly(event.spooled());
+            return;
+        }
+        try {
+            ingestionExecutor.execute(() -> ingest(event));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.info("Ingestion queue is full, text of {} will be extracted on demand", event.objectKey());
+            deleteQuietly(event.spooled());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onUploadRolledBack(FileUploadedEvent event) {
+        deleteQuietly(event.spooled());
+    }
+
+    private void ingest(FileUploadedEvent event) {
+        long start = System.nanoTime();
+        try {
+            fileService.ingestText(event.objectKey(), event.eTag(), event.spooled(), event.fileType());
+            ingested.increment();
+            logger.debug("Ingested {} in {} ms", event.objectKey(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            failed.increment();
+            logger.warn("Ingestion of {} failed, it will be extracted on demand: {}", event.objectKey(), e.getMessage());
+        } finally {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            deleteQuietly(event.spooled());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete spooled upload {}: {}", path, e.getMessage());
+        }
+    }
+}
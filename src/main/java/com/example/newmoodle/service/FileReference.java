@@ -0,0 +1,9 @@
+package com.example.newmoodle.service;
+
+/**
+ * What an Assignment or Submission keeps of an uploaded file: the key of the stored object and
+ * the name this particular upload came with. Identical files share one object, so the name
+ * cannot be derived from the key.
+ */
+public record FileReference(String key, String fileName) {
+}
@@ -1,52 +1,85 @@
 package com.example.newmoodle.service;
 
 
+import com.example.newmoodle.dto.FileInfoDto;
+import com.example.newmoodle.model.ObjectDeletion;
+import com.example.newmoodle.model.StoredFile;
+import com.example.newmoodle.repository.ObjectDeletionRepository;
+import com.example.newmoodle.repository.StoredFileRepository;
+import com.example.newmoodle.repository.StoredObjectRepository;
+import com.example.newmoodle.service.storage.ObjectDownload;
+import com.example.newmoodle.service.storage.SignedUrl;
+import com.example.newmoodle.service.storage.StorageBackend;
+import com.example.newmoodle.service.storage.StorageObject;
 import lombok.RequiredArgsConstructor;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
-import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.AbstractResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.*;
-import software.amazon.awssdk.services.s3.presigner.S3Presigner;
-import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
-import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map; // Import Map
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class FileService {
 
-    // ... (Existing fields and methods: logger, s3Client, s3Presigner, bucketName, etc.) ...
+    // ... (Existing fields and methods: logger, storageBackend, etc.) ...
     private static final Logger logger = LoggerFactory.getLogger(FileService.class);
-
-    private final S3Client s3Client;
-    private final S3Presigner s3Presigner;
-
-    @Value("${aws.s3.bucket-name}")
-    private String bucketName;
+    private static final String CONTENT_KEY_PREFIX = "sha256/";
+    private static final Duration DELETION_WAIT = Duration.ofSeconds(10);
+    private static final Duration DELETION_POLL_INTERVAL = Duration.ofMillis(200);
+
+    private final StorageBackend storageBackend;
+    private final ExtractedTextCache extractedTextCache;
+    private final ObjectDiskCache objectDiskCache;
+    private final DocumentTextExtractor documentTextExtractor;
+    private final ExtractionWorkerPool extractionWorkerPool;
+    private final StoredObjectRepository storedObjectRepository;
+    private final StoredFileRepository storedFileRepository;
+    private final ObjectDeletionRepository objectDeletionRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${aws.s3.presigned-url-duration:15}")
     private long presignedUrlDurationMinutes;
 
+    @Value("${aws.s3.presigned-url-refresh-margin-seconds:60}")
+    private long presignedUrlRefreshMarginSeconds;
+
+    @Value("${aws.s3.presigned-url-cache-max-entries:10000}")
+    private int presignedUrlCacheMaxEntries;
+
+    private final Map<SignedUrlKey, CachedUrl> signedDownloadUrls = new ConcurrentHashMap<>();
+
     private static final Map<String, String> EXTENSION_TO_MIME_TYPE = Map.of(
             "png", "image/png",
             "jpg", "image/jpeg",
@@ -59,104 +92,458 @@ public class FileService {
             // Add other types if you support them
     );
 
+    private static final Map<String, String> MIME_TYPE_TO_EXTENSION = Map.of(
+            "image/png", "png",
+            "image/jpeg", "jpg",
+            "image/gif", "gif",
+            "image/webp", "webp",
+            "application/pdf", "pdf",
+            ContentTypeSniffer.DOCX, "docx",
+            "text/plain", "txt"
+    );
+
     // Define sets for quick type checking
     private static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "gif", "webp");
     private static final Set<String> TEXT_EXTRACTABLE_EXTENSIONS = Set.of("pdf", "docx", "txt");
 
 
     // --- uploadFile, downloadFileAsStream, deleteFile, loadFileAsResource, downloadFileAsBytes remain the same ---
-    public String uploadFile(MultipartFile file) throws IOException {
-        // ... (implementation unchanged)
-        String originalFileName = file.getOriginalFilename() != null ? file.getOriginalFilename() : "file";
-        String safeOriginalName = originalFileName.replaceAll("[^a-zA-Z0-9.\\-_]", "_");
-        String key = UUID.randomUUID().toString() + "_" + safeOriginalName;
-
+    /**
+     * Stores the file and returns its key together with the name it was uploaded under. The upload
+     * is hashed and its type sniffed while it is spooled to disk; objects are stored under a key
+     * derived from the hash, so if the same bytes are already stored, a reference to the existing
+     * object is returned and nothing is sent to the bucket. A new object is checked for after its
+     * reference is registered, since a bucket delete of the same bytes may have run meanwhile, and
+     * stored again if it is gone. The object is recorded in the stored_file catalog.
+     * Text-extractable files are handed to {@link FileIngestionWorker} together with the spooled
+     * copy, so their text is extracted after commit without downloading them again.
+     */
+    public FileReference uploadFile(MultipartFile file) throws IOException {
+        String originalName = file.getOriginalFilename() != null && !file.getOriginalFilename().isBlank()
+                ? file.getOriginalFilename() : "file";
+        String key = null;
 
-        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                .bucket(bucketName)
-                .key(key)
-                .contentType(file.getContentType())
-                .build();
+        Path spooled = Files.createTempFile("newmoodle-upload-", ".tmp");
+        boolean handedOff = false;
+        try {
+            MessageDigest digest = newSha256();
+            String contentType;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+                 OutputStream out = Files.newOutputStream(spooled)) {
+                byte[] head = in.readNBytes(ContentTypeSniffer.HEAD_BYTES);
+                contentType = sniffContentType(head, head.length, originalName);
+                out.write(head);
+                in.transferTo(out);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            long size = Files.size(spooled);
+
+            Optional<String> existingKey = storedObjectRepository.addReference(sha256, size);
+            if (existingKey.isPresent()) {
+                logger.info("File content already stored under key {}, reusing it", existingKey.get());
+                storedFileRepository.registerIfAbsent(existingKey.get(), size, contentType, sha256);
+                handedOff = queueIngestion(existingKey.get(), null, spooled, contentType);
+                return new FileReference(existingKey.get(), originalName);
+            }
 
-        try (InputStream inputStream = file.getInputStream()) {
-            s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(inputStream, file.getSize()));
-            logger.info("File uploaded successfully to R2/S3 with key: {}", key);
-            return key;
-        } catch (S3Exception e) {
-            logger.error("S3 Error uploading file with key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
-            throw new IOException("Failed to upload file to R2/S3: " + e.getMessage(), e);
+            key = contentKey(sha256);
+            // A bucket delete of the same key still running would remove the copy we are about to put
+            awaitDeletion(sha256);
+            String eTag = storageBackend.put(key, spooled, contentType);
+            String registeredKey = storedObjectRepository.register(sha256, key, size)
+                    .orElseThrow(() -> new IOException("The same file is being deleted right now, please upload it again"));
+            if (!registeredKey.equals(key)) {
+                // The same bytes are stored under a key from before content addressing; keep that one
+                logger.info("File content is stored under legacy key {}, dropping duplicate {}", registeredKey, key);
+                deleteObject(key);
+                storedFileRepository.registerIfAbsent(registeredKey, size, contentType, sha256);
+                handedOff = queueIngestion(registeredKey, null, spooled, contentType);
+                return new FileReference(registeredKey, originalName);
+            }
+            // Our reference keeps the deletion worker off the key from here on, but a bucket delete of
+            // the same bytes that ran between awaitDeletion and register has removed the copy we put
+            if (storageBackend.head(key) == null) {
+                logger.warn("Object {} was deleted while it was being uploaded, storing it again", key);
+                eTag = storageBackend.put(key, spooled, contentType);
+            }
+            storedFileRepository.registerIfAbsent(key, size, contentType, sha256);
+            logger.info("File uploaded successfully to R2/S3 with key: {} ({}, {} bytes)", key, contentType, size);
+            handedOff = queueIngestion(key, eTag, spooled, contentType);
+            return new FileReference(key, originalName);
         } catch (IOException e) {
             logger.error("IO Error uploading file with key {}: {}", key, e.getMessage(), e);
             throw e;
+        } finally {
+            if (!handedOff) {
+                deleteQuietly(spooled);
+            }
         }
     }
 
-    public ResponseInputStream<GetObjectResponse> downloadFileAsStream(String key) {
-        // ... (implementation unchanged)
-        try {
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .build();
-            logger.debug("Requesting input stream for key: {}", key);
-            return s3Client.getObject(getObjectRequest);
-        } catch (NoSuchKeyException e) {
-            logger.warn("File not found in R2/S3 with key: {}", key);
+    /**
+     * Key of the object holding the bytes with this SHA-256. Says nothing about who uploaded them.
+     */
+    static String contentKey(String sha256) {
+        return CONTENT_KEY_PREFIX + sha256;
+    }
+
+    /**
+     * Waits for a running bucket delete of these bytes to finish, so they can be stored again.
+     */
+    private void awaitDeletion(String sha256) throws IOException {
+        long deadline = System.nanoTime() + DELETION_WAIT.toNanos();
+        while (storedObjectRepository.isBeingDeleted(sha256)) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IOException("The same file is being deleted right now, please upload it again");
+            }
+            try {
+                Thread.sleep(DELETION_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a file deletion", e);
+            }
+        }
+    }
+
+    /**
+     * Publishes the upload for post-commit ingestion if its text can be extracted.
+     * @return true if the event now owns the spooled file.
+     */
+    private boolean queueIngestion(String key, String eTag, Path spooled, String contentType) {
+        String fileType = MIME_TYPE_TO_EXTENSION.getOrDefault(contentType, "");
+        if (!isTextExtractableFileExtension(fileType)) {
+            return false;
+        }
+        eventPublisher.publishEvent(new FileUploadedEvent(key, eTag, spooled, fileType));
+        return true;
+    }
+
+    /**
+     * Extracts the text of a freshly uploaded file from its spooled copy and stores it in the
+     * extraction cache under the object's ETag, so feedback finds it ready. Does nothing if the
+     * text is already cached (e.g. the same bytes were uploaded before).
+     */
+    public void ingestText(String key, String eTag, Path spooled, String fileType) throws Exception {
+        extractedTextCache.get(key, eTag != null ? eTag : getETag(key), () -> extractFromFile(key, spooled, fileType));
+    }
+
+    /**
+     * Catalogs an object the client PUT directly. Its type is sniffed from the first block, read
+     * with a ranged GET; the SHA-256 stays unknown because the bytes never pass through this node.
+     * @return the sniffed content type.
+     */
+    public String catalogDirectUpload(String key, String fileName, StorageObject head) throws IOException {
+        ByteArrayOutputStream block = new ByteArrayOutputStream(ContentTypeSniffer.HEAD_BYTES);
+        if (head.size() > 0) {
+            try (ObjectDownload download = storageBackend.get(key, "bytes=0-" + (ContentTypeSniffer.HEAD_BYTES - 1), null, null)) {
+                if (download == null) {
+                    throw new FileNotFoundException("File not found with key: " + key);
+                }
+                download.transferTo(block);
+            }
+        }
+        String contentType = sniffContentType(block.toByteArray(), Math.min(block.size(), ContentTypeSniffer.HEAD_BYTES),
+                getDisplayFileName(key, fileName));
+        storedFileRepository.registerIfAbsent(key, head.size(), contentType, null);
+        return contentType;
+    }
+
+    private String sniffContentType(byte[] head, int length, String fileName) {
+        String contentType = ContentTypeSniffer.sniff(head, length);
+        // A docx whose word/ parts are not among the first zip entries
+        if ("application/zip".equals(contentType) && "docx".equals(getExtension(fileName))) {
+            return ContentTypeSniffer.DOCX;
+        }
+        return contentType;
+    }
+
+    /**
+     * The object's catalog entry, if it was stored after the catalog was introduced.
+     */
+    public Optional<StoredFile> getFileInfo(String key) {
+        return key == null || key.isEmpty() ? Optional.empty() : storedFileRepository.findByObjectKey(key);
+    }
+
+    /**
+     * Catalog entries for several objects in one query, by key. Keys without an entry are absent.
+     */
+    public Map<String, StoredFile> getFileInfos(Collection<String> keys) {
+        List<String> present = keys.stream().filter(k -> k != null && !k.isEmpty()).distinct().toList();
+        if (present.isEmpty()) {
+            return Map.of();
+        }
+        return storedFileRepository.findByObjectKeyIn(present).stream()
+                .collect(Collectors.toMap(StoredFile::getObjectKey, Function.identity()));
+    }
+
+    /**
+     * @param fileName the name the referencing upload came with; the catalog entry may be shared
+     * by uploads under other names.
+     */
+    public FileInfoDto mapToFileInfoDto(StoredFile file, String fileName) {
+        if (file == null) {
             return null;
-        } catch (S3Exception e) {
-            logger.error("S3 Error downloading file stream for key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
+        }
+        return FileInfoDto.builder()
+                .originalName(getDisplayFileName(file.getObjectKey(), fileName))
+                .sizeBytes(file.getSizeBytes())
+                .contentType(file.getContentType())
+                .sha256(file.getSha256())
+                .pageCount(file.getPageCount())
+                .wordCount(file.getWordCount())
+                .build();
+    }
+
+    /**
+     * Server-generated object key: a random UUID plus the sanitized original file name.
+     */
+    public String newObjectKey(String originalFileName) {
+        String name = originalFileName != null && !originalFileName.isBlank() ? originalFileName : "file";
+        String safeOriginalName = name.replaceAll("[^a-zA-Z0-9.\\-_]", "_");
+        return UUID.randomUUID().toString() + "_" + safeOriginalName;
+    }
+
+    /**
+     * URL the client can PUT the file to directly, bypassing this node. Content type and length
+     * are bound into the URL, so the client cannot send anything other than what it declared.
+     */
+    public SignedUrl presignUpload(String key, String contentType, long contentLength, Duration validity) {
+        return storageBackend.uploadUrl(key, contentType, contentLength, validity);
+    }
+
+    /**
+     * Stores generated bytes (e.g. a derived image) under a caller-chosen key.
+     */
+    public void uploadBytes(String key, byte[] content, String contentType) throws IOException {
+        storageBackend.put(key, content, contentType);
+        logger.info("Stored {} bytes with key: {}", content.length, key);
+    }
+
+    /**
+     * @return the whole object as a stream (close it after use), or null if it does not exist.
+     * Served from the node-local disk cache when the object fits in it.
+     */
+    public InputStream downloadFileAsStream(String key) {
+        return downloadFileAsStream(key, null);
+    }
+
+    /**
+     * As {@link #downloadFileAsStream(String)}, for a caller that already knows the object's ETag:
+     * a cached copy of that version is served without a HEAD request.
+     */
+    public InputStream downloadFileAsStream(String key, String eTag) {
+        try (ObjectDiskCache.Entry cached = cachedCopy(key, eTag)) {
+            if (cached != null) {
+                // The mapping stays readable after the pin is released and the file evicted
+                return ObjectDiskCache.openMapped(cached.path());
+            }
+            return storageBackend.get(key);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            logger.error("Error downloading file stream for key {}: {}", key, e.getMessage(), e);
             return null;
         }
     }
 
+    /**
+     * Downloads the object with the client's Range, If-None-Match and If-Modified-Since passed
+     * through to the storage backend, so it decides between 200, 206, 304 and 416.
+     * @return the download (close it after use), or null if the object does not exist.
+     */
+    public ObjectDownload downloadFileAsStream(String key, String range, String ifNoneMatch, Instant ifModifiedSince) throws IOException {
+        return storageBackend.get(key, range, ifNoneMatch, ifModifiedSince);
+    }
+
+    /**
+     * Drops one reference to the object. The object itself is deleted only when no
+     * Assignment/Submission refers to it any more. Keys that were never deduplicated (direct
+     * uploads, files stored before reference counting) are deleted right away.
+     * The bucket delete is queued in the outbox within the caller's transaction and performed by
+     * {@link ObjectDeletionWorker} after commit, so callers never wait on the bucket. An upload of
+     * the same bytes before then takes the object back, and the worker leaves it alone.
+     */
+    @Transactional
     public void deleteFile(String key) {
-        // ... (implementation unchanged)
+        Optional<Integer> remaining = storedObjectRepository.releaseReference(key);
+        if (remaining.isPresent() && remaining.get() > 0) {
+            logger.info("Object {} is still referenced, keeping it", key);
+            return;
+        }
+        storedFileRepository.deleteByObjectKeys(List.of(key));
+        LocalDateTime now = LocalDateTime.now();
+        objectDeletionRepository.save(ObjectDeletion.builder()
+                .objectKey(key)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+        eventPublisher.publishEvent(new ObjectDeletionQueuedEvent(key));
+    }
+
+    /**
+     * Deletes the keys right away, in as few backend calls as possible.
+     * @return the keys that could not be deleted, with the error for each.
+     */
+    public Map<String, String> deleteObjects(List<String> keys) {
+        Map<String, String> failures = storageBackend.deleteAll(keys);
+        List<String> deleted = keys.stream().filter(k -> !failures.containsKey(k)).toList();
+        Set<String> deletedKeys = Set.copyOf(deleted);
+        signedDownloadUrls.keySet().removeIf(cached -> deletedKeys.contains(cached.key()));
+        if (!deleted.isEmpty()) {
+            storedFileRepository.deleteByObjectKeys(deleted); // Orphans that never went through deleteFile
+        }
+        return failures;
+    }
+
+    /**
+     * Lists all stored objects one page (at most {@code pageSize} keys) at a time; pages are fetched lazily.
+     */
+    public Iterable<List<StorageObject>> listObjectPages(int pageSize) {
+        return storageBackend.list(pageSize);
+    }
+
+    private void deleteObject(String key) {
         try {
-            DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .build();
-            s3Client.deleteObject(deleteObjectRequest);
-            logger.info("Deleted object from R2/S3 with key: {}", key);
-        } catch (S3Exception e) {
-            logger.error("S3 Error deleting file with key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
+            storageBackend.delete(key);
+            signedDownloadUrls.keySet().removeIf(cached -> cached.key().equals(key));
+        } catch (IOException e) {
+            logger.error("Error deleting file with key {}: {}", key, e.getMessage(), e);
         }
     }
 
-    public Resource loadFileAsResource(String key) {
-        // ... (implementation unchanged)
+    /**
+     * The object as a Resource for proxying it through this node; bytes are streamed from the
+     * storage backend when the response is written.
+     * @param fileName the name the referencing upload came with, used as the Resource's file name.
+     */
+    public Resource loadFileAsResource(String key, String fileName) {
         try {
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .build();
+            StorageObject object = headObject(key);
+            if (object == null) {
+                logger.warn("File not found with key: {}", key);
+                return null;
+            }
+            return new StoredFileResource(key, getDisplayFileName(key, fileName), object.size(), object.eTag());
+        } catch (IOException e) {
+            logger.error("Error reading metadata for key {}: {}", key, e.getMessage(), e);
+            return null;
+        }
+    }
 
-            GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
-                    .signatureDuration(Duration.ofMinutes(presignedUrlDurationMinutes))
-                    .getObjectRequest(getObjectRequest)
-                    .build();
+    private final class StoredFileResource extends AbstractResource {
+        private final String key;
+        private final String fileName;
+        private final long size;
+        private final String eTag;
+
+        private StoredFileResource(String key, String fileName, long size, String eTag) {
+            this.key = key;
+            this.fileName = fileName;
+            this.size = size;
+            this.eTag = eTag;
+        }
 
-            PresignedGetObjectRequest presignedGetObjectRequest = s3Presigner.presignGetObject(presignRequest);
-            URL url = presignedGetObjectRequest.url();
-            logger.info("Generated pre-signed URL for key: {}, expires: {}", key, presignedGetObjectRequest.expiration());
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream stream = downloadFileAsStream(key, eTag);
+            if (stream == null) {
+                throw new FileNotFoundException("File not found with key: " + key);
+            }
+            return stream;
+        }
 
-            Resource resource = new UrlResource(url);
-            return resource;
+        @Override
+        public long contentLength() {
+            return size;
+        }
 
-        } catch (S3Exception e) {
-            logger.error("S3 Error generating pre-signed URL for key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
-            return null;
-        } catch (Exception e) {
-            logger.error("Unexpected error generating pre-signed URL or Resource for key {}: {}", key, e.getMessage(), e);
-            return null;
+        @Override
+        public String getFilename() {
+            return fileName;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Stored file [" + key + "]";
         }
     }
 
+    /**
+     * URL that makes the storage backend itself send the download, with Content-Disposition
+     * and Content-Type overridden so the browser saves it under the original file name. URLs are
+     * cached per key and file name and reused until shortly before they expire, so repeated clicks
+     * do not re-sign.
+     * @param fileName the name the referencing upload came with; null for the catalog's name.
+     */
+    public URI presignDownload(String key, String fileName) {
+        Instant now = Instant.now();
+        String downloadName = getDisplayFileName(key, fileName);
+        SignedUrlKey cacheKey = new SignedUrlKey(key, downloadName);
+        CachedUrl cached = signedDownloadUrls.get(cacheKey);
+        if (cached != null && cached.expiresAt().minus(Duration.ofSeconds(presignedUrlRefreshMarginSeconds)).isAfter(now)) {
+            return cached.url();
+        }
+
+        SignedUrl signed = storageBackend.downloadUrl(key, downloadName, getContentType(key),
+                Duration.ofMinutes(presignedUrlDurationMinutes));
+        if (signedDownloadUrls.size() >= presignedUrlCacheMaxEntries) {
+            signedDownloadUrls.values().removeIf(entry -> !entry.expiresAt().isAfter(now));
+            if (signedDownloadUrls.size() >= presignedUrlCacheMaxEntries) {
+                signedDownloadUrls.clear();
+            }
+        }
+        signedDownloadUrls.put(cacheKey, new CachedUrl(signed.url(), signed.expiresAt()));
+        return signed.url();
+    }
+
+    /**
+     * The name to show for a reference to the object: the name its upload came with, falling back
+     * to {@link #getOriginalFileName(String)} for references stored before names were kept per
+     * reference (their keys still carry the name).
+     */
+    public String getDisplayFileName(String key, String fileName) {
+        if (fileName != null && !fileName.isBlank()) {
+            return fileName;
+        }
+        return getOriginalFileName(key);
+    }
+
+    /**
+     * The sniffed content type from the catalog, falling back to the key's extension for objects
+     * stored before it.
+     */
+    public String getContentType(String key) {
+        return getFileInfo(key).map(StoredFile::getContentType).orElseGet(() -> getMimeType(key));
+    }
+
+    /**
+     * The file name the user uploaded, as far as it survives in the key: the key without its UUID prefix.
+     */
+    public String getOriginalFileName(String key) {
+        int separator = key.indexOf('_');
+        return separator == 36 ? key.substring(separator + 1) : key; // 36 = length of a UUID string
+    }
+
+    private record SignedUrlKey(String key, String fileName) {
+    }
+
+    private record CachedUrl(URI url, Instant expiresAt) {
+    }
 
     public byte[] downloadFileAsBytes(String key) throws IOException {
         // ... (implementation unchanged)
         logger.info("Attempting to download file as bytes for key: {}", key);
-        try (ResponseInputStream<GetObjectResponse> s3ObjectStream = downloadFileAsStream(key)) {
+        try (ObjectDiskCache.Entry cached = cachedCopy(key, (String) null)) {
+            if (cached != null) {
+                byte[] content = ObjectDiskCache.readAllBytes(cached.path());
+                logger.info("Read {} bytes for key {} from the disk cache", content.length, key);
+                return content;
+            }
+        } catch (FileNotFoundException e) {
+            throw new IOException("File not found or could not be accessed in S3/R2 with key: " + key, e);
+        }
+        try (InputStream s3ObjectStream = storageBackend.get(key)) {
             if (s3ObjectStream == null) {
                 throw new IOException("File not found or could not be accessed in S3/R2 with key: " + key);
             }
@@ -188,7 +575,7 @@ public class FileService {
             throw new IllegalArgumentException("R2/S3 object key cannot be null or empty");
         }
 
-        String fileExtension = getExtension(key);
+        String fileExtension = getFileType(key);
         logger.info("Attempting text extraction for key: {}, detected extension: '{}'", key, fileExtension);
 
         if (!isTextExtractableFileExtension(fileExtension)) {
@@ -201,21 +588,90 @@ public class FileService {
             }
         }
 
-        try (InputStream inputStream = downloadFileAsStream(key)) {
-            if (inputStream == null) {
-                logger.error("Could not get input stream for key '{}'. File might not exist or S3 error occurred.", key);
-                throw new IOException("Failed to get file stream from R2/S3 for key: " + key);
+        StorageObject head = headObject(key);
+        if (head == null) {
+            throw new IOException("File not found with key: " + key);
+        }
+        return extractedTextCache.get(key, head.eTag(), () -> extractTextUncached(key, head, fileExtension));
+    }
+
+    /**
+     * Returns the object's ETag with a HEAD request, which identifies the exact stored bytes.
+     */
+    public String getETag(String key) throws IOException {
+        StorageObject head = headObject(key);
+        if (head == null) {
+            throw new IOException("File not found with key: " + key);
+        }
+        return head.eTag();
+    }
+
+    /**
+     * HEAD request for the object's metadata.
+     * @return the metadata, or null if the object does not exist.
+     */
+    public StorageObject headObject(String key) throws IOException {
+        return storageBackend.head(key);
+    }
+
+    /**
+     * The object's copy in the node-local disk cache, downloaded on a miss. Content-addressed keys
+     * never change, so their copy is used without asking the storage backend; other keys are
+     * looked up under {@code eTag} when the caller already has it, and with a HEAD otherwise.
+     * @return the pinned entry (close it after use), or null if caching is disabled or the object
+     * is too large to cache.
+     * @throws FileNotFoundException if the object does not exist.
+     */
+    private ObjectDiskCache.Entry cachedCopy(String key, String eTag) throws IOException {
+        if (!objectDiskCache.isEnabled()) {
+            return null;
+        }
+        String version = cacheVersion(key, eTag);
+        if (version != null) {
+            ObjectDiskCache.Entry cached = objectDiskCache.lookup(key, version);
+            if (cached != null) {
+                return cached;
             }
+        }
+        StorageObject head = headObject(key);
+        if (head == null) {
+            throw new FileNotFoundException("File not found with key: " + key);
+        }
+        return cachedCopy(key, head);
+    }
+
+    private ObjectDiskCache.Entry cachedCopy(String key, StorageObject head) throws IOException {
+        return objectDiskCache.get(key, cacheVersion(key, head.eTag()), head.size(), () -> storageBackend.get(key));
+    }
+
+    private static String cacheVersion(String key, String eTag) {
+        // The same bytes may carry different ETags (single vs multipart PUT); the key alone identifies them
+        return key.startsWith(CONTENT_KEY_PREFIX) ? CONTENT_KEY_PREFIX : eTag;
+    }
 
-            return switch (fileExtension) {
-                case "pdf" -> extractTextFromPdf(inputStream);
-                case "docx" -> extractTextFromDocx(inputStream);
-                case "txt" -> new String(inputStream.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
-                default -> { // Should not be reached due to check above, but as failsafe
-                    logger.error("Reached default case in extractText unexpectedly for extension: {}", fileExtension);
-                    throw new IllegalArgumentException("File type check failed for text extraction: " + fileExtension);
+    private String extractTextUncached(String key, StorageObject head, String fileExtension) throws Exception {
+        Path spooled = null;
+        ObjectDiskCache.Entry cached = null;
+        try {
+            // Parsers read the file through random access instead of a heap copy
+            cached = cachedCopy(key, head);
+            Path file;
+            if (cached != null) {
+                file = cached.path();
+            } else {
+                try (InputStream inputStream = storageBackend.get(key)) {
+                    if (inputStream == null) {
+                        logger.error("Could not get input stream for key '{}'. File might not exist or S3 error occurred.", key);
+                        throw new IOException("Failed to get file stream from R2/S3 for key: " + key);
+                    }
+                    spooled = spoolToTempFile(inputStream, "." + fileExtension);
                 }
-            };
+                file = spooled;
+            }
+
+            String text = extractFromFile(key, file, fileExtension);
+            logger.debug("Successfully extracted text from {} file {}", fileExtension, key);
+            return text;
         } catch (IOException ioException) {
             logger.error("IOException during text extraction process for key {}: {}", key, ioException.getMessage(), ioException);
             throw ioException;
@@ -225,38 +681,51 @@ public class FileService {
         } catch (Exception e) {
             logger.error("Unexpected error during text extraction for key {}: {}", key, e.getMessage(), e);
             throw new Exception("Failed to extract text from file (key: " + key + "): " + e.getMessage(), e);
+        } finally {
+            if (cached != null) {
+                cached.close();
+            }
+            if (spooled != null) {
+                deleteQuietly(spooled);
+            }
         }
     }
-    // --- extractTextFromPdf, extractTextFromDocx remain the same ---
-    private String extractTextFromPdf(InputStream inputStream) throws IOException {
-        // ... (implementation unchanged)
-        try (PDDocument document = Loader.loadPDF(inputStream.readAllBytes())) {
-            if (document.isEncrypted()) {
-                logger.warn("Attempting to extract text from an encrypted PDF. Result may be empty or partial.");
-            }
-            PDFTextStripper textStripper = new PDFTextStripper();
-            String text = textStripper.getText(document);
-            logger.debug("Successfully extracted text from PDF");
-            return text;
-        } catch (Exception e) {
-            logger.error("Error extracting text from PDF: {}", e.getMessage(), e);
-            throw new IOException("Failed to parse PDF content: " + e.getMessage(), e);
+
+    /**
+     * Extracts a local copy of the object and records its page and word counts in the catalog.
+     */
+    private String extractFromFile(String key, Path file, String fileExtension) throws Exception {
+        ExtractedDocument document = extractionWorkerPool.isEnabled()
+                ? extractionWorkerPool.extract(file, fileExtension) // Parsed in an isolated child JVM
+                : documentTextExtractor.extractDocument(file, fileExtension);
+        storedFileRepository.updateTextStats(key, document.pageCount(), document.wordCount());
+        return document.text();
+    }
+
+    private Path spoolToTempFile(InputStream inputStream, String suffix) throws IOException {
+        Path tempFile = Files.createTempFile("newmoodle-", suffix);
+        try {
+            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            return tempFile;
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw e;
         }
     }
 
-    private String extractTextFromDocx(InputStream inputStream) throws Exception {
-        // ... (implementation unchanged)
+    private static MessageDigest newSha256() {
         try {
-            WordprocessingMLPackage wordMLPackage = WordprocessingMLPackage.load(inputStream);
-            MainDocumentPart documentPart = wordMLPackage.getMainDocumentPart();
-            org.docx4j.wml.Document wmlDocumentEl = documentPart.getContents();
-            javax.xml.bind.JAXBElement<?> body = (javax.xml.bind.JAXBElement<?>) wmlDocumentEl.getBody().getContent().get(0);
-            String text = org.docx4j.TextUtils.getText(body);
-            logger.debug("Successfully extracted text from DOCX");
-            return text != null ? text : "";
-        } catch (Exception e) {
-            logger.error("Error extracting text from DOCX: {}", e.getMessage(), e);
-            throw new Exception("Failed to parse DOCX content: " + e.getMessage(), e);
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary file {}: {}", path, e.getMessage());
         }
     }
 
@@ -275,22 +744,35 @@ public class FileService {
     }
 
     /**
-     * Checks if the file key likely represents an image based on its extension.
+     * The file's type as an extension: derived from the sniffed content type in the catalog, or
+     * the key's own extension for objects stored before it.
+     * @param key The S3 object key.
+     * @return The lower-case extension without the dot, or empty string if unknown.
+     */
+    public String getFileType(String key) {
+        return getFileInfo(key)
+                .map(StoredFile::getContentType)
+                .map(contentType -> MIME_TYPE_TO_EXTENSION.getOrDefault(contentType, ""))
+                .orElseGet(() -> getExtension(key));
+    }
+
+    /**
+     * Checks if the file is an image, by its sniffed content type where known.
      * Made public for use by other services.
      * @param key The S3 object key.
-     * @return true if the extension is a known image type, false otherwise.
+     * @return true if the file is a known image type, false otherwise.
      */
     public boolean isImageFile(String key) {
-        return isImageFileExtension(getExtension(key));
+        return isImageFileExtension(getFileType(key));
     }
 
     /**
-     * Checks if the file key likely represents a file from which text can be extracted.
+     * Checks if the file is one from which text can be extracted, by its sniffed content type where known.
      * @param key The S3 object key.
-     * @return true if the extension is a known text-extractable type, false otherwise.
+     * @return true if the file is a known text-extractable type, false otherwise.
      */
     public boolean isTextExtractableFile(String key) {
-        return isTextExtractableFileExtension(getExtension(key));
+        return isTextExtractableFileExtension(getFileType(key));
     }
 
     // Private helpers using extensions
@@ -0,0 +1,11 @@
+package com.example.newmoodle.service;
+
+import java.nio.file.Path;
+
+/**
+ * Published when a text-extractable file was stored; handled after the transaction commits.
+ * The handler owns {@code spooled} and deletes it. {@code eTag} is null when the upload was
+ * deduplicated onto an existing object.
+ */
+public record FileUploadedEvent(String objectKey, String eTag, Path spooled, String fileType) {
+}
@@ -0,0 +1,201 @@
+package com.example.newmoodle.service;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.example.newmoodle.service.storage.StorageObject;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Iterator;
+
+/**
+ * Prepares submission images for the vision model: decode once, downscale to a maximum edge,
+ * re-encode as JPEG at a target quality. Re-encoding from pixels drops EXIF and every other
+ * metadata block. The derived JPEG is stored next to the original under {@code derived/<key>...}
+ * so later feedback runs skip the work. JPEG is used because the JDK has no WebP encoder.
+ */
+@Component
+@RequiredArgsConstructor
+public class ImagePreprocessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+    public static final String DERIVED_PREFIX = "derived/";
+
+    private final FileService fileService;
+
+    @Value("${feedback.vision.max-edge:1536}")
+    private int maxEdge;
+
+    @Value("${feedback.vision.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    /**
+     * Appends {@code data:<mime>;base64,<bytes>} for the prepared image to {@code target}.
+     * The base64 is encoded straight into the builder, so no intermediate byte[]/String copies are made.
+     */
+    public void appendDataUri(String key, StringBuilder target) throws IOException {
+        String derivedKey = derivedKey(key);
+        StorageObject derived = fileService.headObject(derivedKey);
+        if (derived != null) {
+            logger.debug("Using cached vision image {}", derivedKey);
+            appendStream(derivedKey, derived.eTag(), "image/jpeg", derived.size(), target);
+            return;
+        }
+
+        byte[] original = fileService.downloadFileAsBytes(key);
+        byte[] prepared = prepare(original);
+        if (prepared == null) {
+            logger.warn("Could not decode image {}, sending it unmodified", key);
+            appendBytes(original, fileService.getContentType(key), target);
+            return;
+        }
+
+        logger.info("Prepared vision image for {}: {} -> {} bytes", key, original.length, prepared.length);
+        try {
+            fileService.uploadBytes(derivedKey, prepared, "image/jpeg");
+        } catch (IOException e) {
+            logger.warn("Could not cache derived image {}: {}", derivedKey, e.getMessage());
+        }
+        appendBytes(prepared, "image/jpeg", target);
+    }
+
+    public String derivedKey(String key) {
+        return DERIVED_PREFIX + key + ".vision-" + maxEdge + "-q" + Math.round(jpegQuality * 100) + ".jpg";
+    }
+
+    /**
+     * @return the re-encoded JPEG, or null if no ImageIO reader understands the input.
+     */
+    byte[] prepare(byte[] original) throws IOException {
+        BufferedImage decoded = decode(original);
+        if (decoded == null) {
+            return null;
+        }
+        BufferedImage scaled = scaleToRgb(decoded);
+        return encodeJpeg(scaled);
+    }
+
+    private BufferedImage decode(byte[] original) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true); // ignoreMetadata: EXIF is never even parsed
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                // Let the decoder skip pixels for huge photos; keep >= 2x the target for a smooth final scale
+                int subsampling = Math.max(1, longest / (2 * maxEdge));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scaleToRgb(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE); // Flatten transparency (PNG/GIF) onto white
+            g.fillRect(0, 0, targetWidth, targetHeight);
+            g.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private void appendStream(String key, String eTag, String mimeType, long size, StringBuilder target) throws IOException {
+        target.ensureCapacity(target.length() + 32 + base64Length(size));
+        target.append("data:").append(mimeType).append(";base64,");
+        try (InputStream in = fileService.downloadFileAsStream(key, eTag)) {
+            if (in == null) {
+                throw new IOException("File not found or could not be accessed in S3/R2 with key: " + key);
+            }
+            try (OutputStream encoder = Base64.getEncoder().wrap(new AsciiAppender(target))) {
+                in.transferTo(encoder);
+            }
+        }
+    }
+
+    private void appendBytes(byte[] bytes, String mimeType, StringBuilder target) throws IOException {
+        target.ensureCapacity(target.length() + 32 + base64Length(bytes.length));
+        target.append("data:").append(mimeType).append(";base64,");
+        try (OutputStream encoder = Base64.getEncoder().wrap(new AsciiAppender(target))) {
+            encoder.write(bytes);
+        }
+    }
+
+    private static int base64Length(long size) {
+        return (int) Math.min(Integer.MAX_VALUE - 64, 4 * ((size + 2) / 3));
+    }
+
+    /**
+     * Writes base64 output (pure ASCII) directly into a StringBuilder.
+     */
+    private static final class AsciiAppender extends OutputStream {
+        private final StringBuilder target;
+
+        private AsciiAppender(StringBuilder target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            target.append((char) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                target.append((char) b[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.newmoodle.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * Fails LLM calls fast once the provider keeps failing. After {@code failureThreshold} consecutive
+ * retryable failures the circuit opens for {@code openDuration} (or the provider's Retry-After, if
+ * longer). The first call after that is let through alone as a probe: success closes the circuit,
+ * failure opens it again.
+ */
+class LlmCircuitBreaker {
+
+    enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmCircuitBreaker.class);
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilNanos;
+
+    LlmCircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * @return false if the call must be rejected; true if it may go ahead (possibly as the half-open probe)
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openUntilNanos >= 0) {
+                    state = State.HALF_OPEN;
+                    logger.info("LLM circuit half-open, sending a probe call");
+                    return true;
+                }
+                return false;
+            default:
+                return false; // A probe is already in flight
+        }
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            logger.info("LLM circuit closed");
+        }
+    }
+
+    synchronized void onFailure(Duration retryAfter) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            Duration wait = retryAfter != null && retryAfter.compareTo(openDuration) > 0 ? retryAfter : openDuration;
+            if (state != State.OPEN) {
+                logger.warn("LLM circuit opened for {}s after {} consecutive failures", wait.toSeconds(), consecutiveFailures);
+            }
+            state = State.OPEN;
+            openUntilNanos = System.nanoTime() + wait.toNanos();
+        }
+    }
+
+    /**
+     * The call ended without telling us anything about the provider (cancelled, never sent).
+     * A probe in that state hands the probe over to the next caller.
+     */
+    synchronized void onIgnore() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openUntilNanos = System.nanoTime();
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Time until the open circuit lets a probe through; zero unless open.
+     */
+    synchronized Duration remainingOpen() {
+        return state == State.OPEN ? Duration.ofNanos(Math.max(0, openUntilNanos - System.nanoTime())) : Duration.ZERO;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.newmoodle.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Chat-completion backend used for AI feedback.
+ * Implementations are long-lived singletons that own their HTTP connection pool;
+ * callers never construct clients per request.
+ */
+public interface LlmClient {
+
+    /**
+     * Sends a single user prompt and returns the trimmed completion text.
+     */
+    String complete(LlmRequest request);
+
+    /**
+     * Streams the completion: each text delta is passed to {@code onDelta} as it arrives, and the
+     * whole trimmed text is returned at the end. {@code cancellation} aborts the upstream call;
+     * a cancelled call throws {@link java.util.concurrent.CancellationException}.
+     * Backends without streaming deliver the whole completion as a single delta.
+     */
+    default String stream(LlmRequest request, Consumer<String> onDelta, StreamCancellation cancellation) {
+        String text = complete(request);
+        if (cancellation.isCancelled()) {
+            throw new CancellationException("LLM call cancelled");
+        }
+        onDelta.accept(text);
+        return text;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.newmoodle.service;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Provider-neutral failure of an LLM call. {@link LlmClient} implementations translate their
+ * transport and HTTP errors into this so {@link ResilientLlmClient} can decide whether to retry.
+ */
+public class LlmClientException extends RuntimeException {
+
+    /** Status used when no HTTP response was received (connection failure, timeout). */
+    public static final int NO_RESPONSE = 0;
+
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    public LlmClientException(String message, int statusCode, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * How long the provider asked us to wait before trying again, or null if it did not say.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Transport failures, timeouts, rate limiting and server errors are worth another attempt;
+     * other 4xx answers mean the request itself is wrong.
+     */
+    public boolean isRetryable() {
+        return statusCode == NO_RESPONSE || statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * Parses a Retry-After value, either delta-seconds or an HTTP date. Returns null if absent or malformed.
+     */
+    public static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            try {
+                Duration until = Duration.between(ZonedDateTime.now(),
+                        ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME));
+                return until.isNegative() ? Duration.ZERO : until;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.newmoodle.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LlmRequest {
+    private String model;
+    private String prompt;
+    private double temperature;
+    private long maxCompletionTokens;
+}
@@ -0,0 +1,96 @@
+package com.example.newmoodle.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Stand-in {@link LlmClient} for tests and load tests (llm.provider=local).
+ * Posts {@code {"model", "prompt", "temperature", "maxCompletionTokens"}} as JSON to a local HTTP stub
+ * and accepts either {@code {"content": "..."}} or a plain-text body as the completion.
+ */
+@Service
+@Qualifier("llmBackend")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "llm.provider", havingValue = "local")
+public class LocalHttpLlmClient implements LlmClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalHttpLlmClient.class);
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${llm.local.url:http://localhost:8089/v1/complete}")
+    private String url;
+
+    @Value("${llm.local.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    private HttpClient httpClient;
+
+    @PostConstruct
+    void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        logger.info("Using local LLM stand-in at {}", url);
+    }
+
+    @Override
+    public String complete(LlmRequest request) {
+        try {
+            String body = objectMapper.writeValueAsString(Map.of(
+                    "model", request.getModel(),
+                    "prompt", request.getPrompt(),
+                    "temperature", request.getTemperature(),
+                    "maxCompletionTokens", request.getMaxCompletionTokens()));
+
+            HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(timeoutSeconds))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+
+            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw new LlmClientException("Local LLM stub answered HTTP " + response.statusCode(), response.statusCode(),
+                        LlmClientException.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null)), null);
+            }
+            return parseContent(response.body());
+        } catch (IOException e) {
+            throw new LlmClientException("Local LLM stub call failed: " + e.getMessage(), LlmClientException.NO_RESPONSE, null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LlmClientException("Interrupted while calling local LLM stub", LlmClientException.NO_RESPONSE, null, e);
+        }
+    }
+
+    private String parseContent(String body) {
+        String trimmed = body.trim();
+        if (trimmed.startsWith("{")) {
+            try {
+                JsonNode content = objectMapper.readTree(trimmed).get("content");
+                if (content != null) {
+                    return content.asText().trim();
+                }
+            } catch (IOException e) {
+                logger.debug("Local LLM stub body is not JSON, using it verbatim");
+            }
+        }
+        return trimmed;
+    }
+}
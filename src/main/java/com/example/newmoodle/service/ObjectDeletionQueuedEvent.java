@@ -0,0 +1,7 @@
+package com.example.newmoodle.service;
+
+/**
+ * Published when object deletions were added to the outbox; handled after the transaction commits.
+ */
+public record ObjectDeletionQueuedEvent(String objectKey) {
+}
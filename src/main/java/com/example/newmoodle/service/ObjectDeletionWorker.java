@@ -0,0 +1,155 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.model.ObjectDeletion;
+import com.example.newmoodle.repository.ObjectDeletionRepository;
+import com.example.newmoodle.repository.StoredObjectRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drains the object deletion outbox with S3 DeleteObjects, up to 1000 keys per call. Runs right
+ * after a deleting transaction commits (on its own single-thread executor) and on a schedule to
+ * pick up retries and rows left behind by another node. Failed keys are retried with exponential
+ * backoff.
+ */
+@Component
+@RequiredArgsConstructor
+public class ObjectDeletionWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObjectDeletionWorker.class);
+    private static final int MAX_KEYS_PER_REQUEST = 1000; // DeleteObjects limit
+
+    private final ObjectDeletionRepository objectDeletionRepository;
+    private final StoredObjectRepository storedObjectRepository;
+    private final FileService fileService;
+    private final ExtractedTextCache extractedTextCache;
+    private final TransactionTemplate transactionTemplate;
+    @Qualifier("deletionExecutor")
+    private final ThreadPoolTaskExecutor deletionExecutor;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    @Value("${storage.deletion.retry-base-seconds:30}")
+    private long retryBaseSeconds;
+
+    @Value("${storage.deletion.retry-max-seconds:3600}")
+    private long retryMaxSeconds;
+
+    @Value("${storage.deletion.claim-lease-seconds:300}")
+    private long claimLeaseSeconds;
+
+    /**
+     * Starts a drain after the deleting transaction commits. A drain already queued picks up these
+     * rows as well, so the trigger is dropped when the executor's single queue slot is taken.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeletionQueued(ObjectDeletionQueuedEvent event) {
+        try {
+            deletionExecutor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Object deletion drain already queued");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${storage.deletion.poll-interval-ms:60000}")
+    public void drain() {
+        // Events from one big delete arrive together; one drain on this node handles all of them
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int processed;
+            do {
+                processed = drainBatch();
+            } while (processed == MAX_KEYS_PER_REQUEST);
+        } catch (Exception e) {
+            logger.error("Failed to drain object deletion outbox: {}", e.getMessage(), e);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * Claims a batch and commits, deletes the objects without holding any row lock, then records
+     * the outcome in a second short transaction.
+     */
+    private int drainBatch() {
+        Claim claim = transactionTemplate.execute(status -> claim(LocalDateTime.now()));
+        if (claim == null || claim.deletionIds().isEmpty()) {
+            return 0;
+        }
+
+        Map<String, String> failures = claim.doomed().isEmpty() ? Map.of() : fileService.deleteObjects(claim.doomed());
+
+        transactionTemplate.executeWithoutResult(status -> finish(claim, failures, LocalDateTime.now()));
+        if (claim.keptKeys() > 0) {
+            logger.info("Kept {} queued objects that are referenced again", claim.keptKeys());
+        }
+        logger.info("Deleted {} of {} queued objects", claim.doomed().size() - failures.size(), claim.deletionIds().size());
+        return claim.deletionIds().size();
+    }
+
+    /**
+     * Takes due rows out of the other nodes' reach for the claim lease (if this node dies, they
+     * come due again) and marks their unreferenced objects as being deleted.
+     */
+    private Claim claim(LocalDateTime now) {
+        List<ObjectDeletion> batch = objectDeletionRepository.lockDue(now, MAX_KEYS_PER_REQUEST);
+        if (batch.isEmpty()) {
+            return new Claim(List.of(), List.of(), 0);
+        }
+        batch.forEach(deletion -> deletion.setNextAttemptAt(now.plusSeconds(claimLeaseSeconds)));
+
+        List<String> keys = batch.stream().map(ObjectDeletion::getObjectKey).distinct().toList();
+        // Objects an upload of the same bytes took back since the delete was queued stay
+        storedObjectRepository.markDeleting(keys);
+        Set<String> live = new HashSet<>(storedObjectRepository.findLiveKeys(keys));
+        List<String> doomed = keys.stream().filter(key -> !live.contains(key)).toList();
+        return new Claim(batch.stream().map(ObjectDeletion::getId).toList(), doomed, live.size());
+    }
+
+    private void finish(Claim claim, Map<String, String> failures, LocalDateTime now) {
+        List<String> deleted = claim.doomed().stream().filter(key -> !failures.containsKey(key)).toList();
+        if (!deleted.isEmpty()) {
+            storedObjectRepository.deleteMarked(deleted);
+            extractedTextCache.evict(deleted);
+        }
+        if (!failures.isEmpty()) {
+            storedObjectRepository.unmarkDeleting(failures.keySet());
+        }
+
+        for (ObjectDeletion deletion : objectDeletionRepository.findAllById(claim.deletionIds())) {
+            String error = failures.get(deletion.getObjectKey());
+            if (error == null) {
+                objectDeletionRepository.delete(deletion);
+                continue;
+            }
+            int attempts = deletion.getAttempts() + 1;
+            long delaySeconds = Math.min(retryMaxSeconds, retryBaseSeconds << Math.min(attempts - 1, 20));
+            deletion.setAttempts(attempts);
+            deletion.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+            deletion.setNextAttemptAt(now.plusSeconds(delaySeconds));
+            logger.warn("Deleting object {} failed (attempt {}), retrying in {}s: {}",
+                    deletion.getObjectKey(), attempts, delaySeconds, error);
+        }
+    }
+
+    private record Claim(List<Long> deletionIds, List<String> doomed, int keptKeys) {
+    }
+}
@@ -0,0 +1,386 @@
+package com.example.newmoodle.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Node-local read-through cache of stored objects on disk, keyed by object key + ETag so a
+ * replaced object is simply a different entry. The budget is the total size of cached files;
+ * least recently used files are deleted first. Entries survive restarts: the directory is
+ * re-indexed on startup. Concurrent misses for the same object on one node share one download.
+ * Callers get a pinned {@link Entry}: eviction skips pinned files, so a path handed out is not
+ * unlinked before the caller has opened it.
+ */
+@Component
+@RequiredArgsConstructor
+public class ObjectDiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObjectDiskCache.class);
+    private static final String ENTRY_SUFFIX = ".obj";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${storage.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.cache.dir:${java.io.tmpdir}/newmoodle-object-cache}")
+    private String directory;
+
+    @Value("${storage.cache.max-bytes:1073741824}")
+    private long maxBytes;
+
+    @Value("${storage.cache.max-entry-bytes:104857600}")
+    private long maxEntryBytes;
+
+    private Path root;
+    // File name (hash of key + ETag) -> size, in access order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+    // File name -> number of open Entry handles
+    private final Map<String, Integer> pins = new HashMap<>();
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictedBytes;
+
+    public interface ObjectLoader {
+        /**
+         * @return the object's content, or null if it does not exist.
+         */
+        InputStream open() throws IOException;
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        hits = Counter.builder("storage.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("storage.cache.requests").tag("result", "miss").register(meterRegistry);
+        evictedBytes = Counter.builder("storage.cache.evicted.bytes").register(meterRegistry);
+        Gauge.builder("storage.cache.bytes", this, ObjectDiskCache::getCachedBytes).register(meterRegistry);
+        Gauge.builder("storage.cache.hit.ratio", this, ObjectDiskCache::getHitRatio).register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(directory).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        reindex();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * A pinned cache entry. The file is not evicted until every handle on it is closed.
+     */
+    public final class Entry implements AutoCloseable {
+        private final String name;
+        private final Path path;
+        private boolean closed;
+
+        private Entry(String name, Path path) {
+            this.name = name;
+            this.path = path;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            synchronized (ObjectDiskCache.this) {
+                if (!closed) {
+                    closed = true;
+                    unpin(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cached copy of this version of the object, without downloading it.
+     * @return the pinned entry (close it after use), or null on a miss.
+     */
+    public Entry lookup(String objectKey, String etag) {
+        if (!enabled) {
+            return null;
+        }
+        Entry cached = pinIfCached(entryName(objectKey, etag));
+        if (cached != null) {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Returns a cached copy of the object, downloading it through {@code loader} on a miss.
+     * @return the pinned entry (close it after use), or null if the object is too large to cache
+     * (read it directly instead).
+     * @throws FileNotFoundException if the loader reports that the object does not exist.
+     */
+    public Entry get(String objectKey, String etag, long size, ObjectLoader loader) throws IOException {
+        if (!enabled || size > maxEntryBytes) {
+            return null;
+        }
+        String name = entryName(objectKey, etag);
+        while (true) {
+            Entry cached = pinIfCached(name);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> existing = inFlight.putIfAbsent(name, mine);
+            if (existing != null) {
+                // Pinned again above; in the rare case it was evicted in between, download it ourselves
+                await(existing);
+                continue;
+            }
+
+            try {
+                misses.increment();
+                Entry downloaded = download(name, objectKey, loader);
+                mine.complete(null);
+                return downloaded;
+            } catch (IOException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(name, mine);
+            }
+        }
+    }
+
+    /**
+     * Maps the whole cached file and returns its bytes; the page cache serves repeat reads.
+     * Keep the entry pinned until this returns.
+     */
+    public static byte[] readAllBytes(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] content = new byte[mapped.remaining()];
+            mapped.get(content);
+            return content;
+        }
+    }
+
+    /**
+     * Stream over a memory-mapped cached file. The mapping stays valid even if the entry is
+     * evicted (unlinked) while the stream is being read.
+     */
+    public static InputStream openMapped(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private Entry download(String name, String objectKey, ObjectLoader loader) throws IOException {
+        Path temp = Files.createTempFile(root, ".download-", ".part");
+        try (InputStream in = loader.open()) {
+            if (in == null) {
+                throw new FileNotFoundException("File not found with key: " + objectKey);
+            }
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            Path target = root.resolve(name);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return add(name, target, Files.size(target));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private synchronized Entry pinIfCached(String name) {
+        if (entries.get(name) == null) {
+            return null;
+        }
+        Path path = root.resolve(name);
+        if (!Files.exists(path)) {
+            cachedBytes -= entries.remove(name); // Removed behind our back (tmp cleaner)
+            return null;
+        }
+        return pin(name, path);
+    }
+
+    private synchronized Entry add(String name, Path path, long size) {
+        Long previous = entries.put(name, size);
+        if (previous != null) {
+            cachedBytes -= previous;
+        }
+        cachedBytes += size;
+        Entry entry = pin(name, path); // Before evicting, so the new file is not the one to go
+        evictOverBudget();
+        return entry;
+    }
+
+    private Entry pin(String name, Path path) {
+        pins.merge(name, 1, Integer::sum);
+        return new Entry(name, path);
+    }
+
+    private void unpin(String name) {
+        if (pins.merge(name, -1, Integer::sum) == 0) {
+            pins.remove(name);
+            // Files skipped while pinned may have left the cache over budget
+            evictOverBudget();
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (pins.containsKey(eldest.getKey())) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(root.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                logger.warn("Could not delete cached object {}: {}", eldest.getKey(), e.getMessage());
+            }
+            cachedBytes -= eldest.getValue();
+            evictedBytes.increment(eldest.getValue());
+            it.remove();
+        }
+    }
+
+    private synchronized void reindex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(root)) {
+            listing.forEach(files::add);
+        }
+        // Oldest first, so they are also first in line for eviction
+        files.sort(Comparator.comparing(ObjectDiskCache::lastAccess));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (!name.endsWith(ENTRY_SUFFIX)) {
+                Files.deleteIfExists(file); // Leftover partial download
+                continue;
+            }
+            long size = Files.size(file);
+            entries.put(name, size);
+            cachedBytes += size;
+        }
+        evictOverBudget();
+        logger.info("Object disk cache at {}: {} entries, {} bytes", root, entries.size(), cachedBytes);
+    }
+
+    private static FileTime lastAccess(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).lastAccessTime();
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String entryName(String objectKey, String etag) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest((objectKey + "|" + etag).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash) + ENTRY_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void await(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a cached download", e);
+        }
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public double getHitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private static final class MappedInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private MappedInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
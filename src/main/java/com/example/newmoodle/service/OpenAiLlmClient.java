@@ -0,0 +1,170 @@
+package com.example.newmoodle.service;
+
+import com.openai.client.OpenAIClient;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.core.http.StreamResponse;
+import com.openai.errors.OpenAIException;
+import com.openai.errors.OpenAIServiceException;
+import com.openai.models.chat.completions.ChatCompletion;
+import com.openai.models.chat.completions.ChatCompletionChunk;
+import com.openai.models.chat.completions.ChatCompletionCreateParams;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * {@link LlmClient} backed by one shared {@link OpenAIClient}. The underlying OkHttp client keeps its
+ * connection pool, TLS sessions and dispatcher threads for the lifetime of the application.
+ */
+@Service
+@Qualifier("llmBackend")
+@ConditionalOnProperty(name = "llm.provider", havingValue = "openai", matchIfMissing = true)
+public class OpenAiLlmClient implements LlmClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenAiLlmClient.class);
+
+    @Value("${openai.api.key}")
+    private String openaiApiKey;
+
+    @Value("${llm.openai.base-url:}")
+    private String baseUrl;
+
+    @Value("${llm.openai.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    @Value("${llm.openai.max-retries:0}")
+    private int maxRetries;
+
+    @Value("${llm.openai.max-connections:16}")
+    private int maxConnections;
+
+    private OpenAIClient client;
+    private Semaphore connectionPermits;
+
+    @PostConstruct
+    void init() {
+        OpenAIOkHttpClient.Builder builder = OpenAIOkHttpClient.builder()
+                .apiKey(openaiApiKey)
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .maxRetries(maxRetries);
+        if (StringUtils.hasText(baseUrl)) {
+            builder.baseUrl(baseUrl);
+        }
+        client = builder.build();
+        // Blocking calls are not limited by OkHttp's dispatcher, so cap them here to bound the pool
+        connectionPermits = new Semaphore(Math.max(1, maxConnections), true);
+        logger.info("OpenAI client initialised (timeout {}s, max retries {}, max connections {})",
+                timeoutSeconds, maxRetries, maxConnections);
+    }
+
+    @PreDestroy
+    void close() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @Override
+    public String complete(LlmRequest request) {
+        ChatCompletionCreateParams params = toParams(request);
+
+        connectionPermits.acquireUninterruptibly();
+        try {
+            return extractContent(client.chat().completions().create(params));
+        } catch (OpenAIException e) {
+            throw translate(e);
+        } finally {
+            connectionPermits.release();
+        }
+    }
+
+    @Override
+    public String stream(LlmRequest request, Consumer<String> onDelta, StreamCancellation cancellation) {
+        connectionPermits.acquireUninterruptibly();
+        try (StreamResponse<ChatCompletionChunk> response = client.chat().completions().createStreaming(toParams(request))) {
+            cancellation.attach(response); // Closing the response aborts the HTTP call
+            StringBuilder text = new StringBuilder();
+            response.stream()
+                    .flatMap(chunk -> chunk.choices().stream())
+                    .forEach(choice -> choice.delta().content()
+                            .filter(delta -> !delta.isEmpty())
+                            .ifPresent(delta -> {
+                                text.append(delta);
+                                onDelta.accept(delta);
+                            }));
+            cancellation.detach();
+            if (cancellation.isCancelled()) {
+                throw new CancellationException("LLM stream cancelled");
+            }
+            return text.toString().trim();
+        } catch (RuntimeException e) {
+            if (cancellation.isCancelled() && !(e instanceof CancellationException)) {
+                throw (CancellationException) new CancellationException("LLM stream cancelled").initCause(e);
+            }
+            throw e instanceof OpenAIException openAIException ? translate(openAIException) : e;
+        } finally {
+            connectionPermits.release();
+        }
+    }
+
+    private static LlmClientException translate(OpenAIException e) {
+        if (e instanceof OpenAIServiceException serviceException) {
+            // OpenAI sends retry-after-ms on rate limits; fall back to the standard header
+            Duration retryAfter = serviceException.headers().values("retry-after-ms").stream()
+                    .findFirst()
+                    .flatMap(OpenAiLlmClient::parseMillis)
+                    .orElseGet(() -> serviceException.headers().values("retry-after").stream()
+                            .findFirst()
+                            .map(LlmClientException::parseRetryAfter)
+                            .orElse(null));
+            return new LlmClientException("OpenAI answered HTTP " + serviceException.statusCode() + ": " + e.getMessage(),
+                    serviceException.statusCode(), retryAfter, e);
+        }
+        // I/O failures and timeouts never got an HTTP answer
+        return new LlmClientException("OpenAI call failed: " + e.getMessage(), LlmClientException.NO_RESPONSE, null, e);
+    }
+
+    private static Optional<Duration> parseMillis(String value) {
+        try {
+            return Optional.of(Duration.ofMillis(Math.max(0, (long) Double.parseDouble(value.trim()))));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private ChatCompletionCreateParams toParams(LlmRequest request) {
+        return ChatCompletionCreateParams.builder()
+                .model(request.getModel())
+                .addUserMessage(request.getPrompt())
+                .temperature(request.getTemperature())
+                .maxCompletionTokens(request.getMaxCompletionTokens())
+                .build();
+    }
+
+    private String extractContent(ChatCompletion completion) {
+        if (completion == null || completion.choices() == null || completion.choices().isEmpty()) {
+            logger.warn("Received empty or null completion from OpenAI.");
+            return "[Error: No content received from AI]";
+        }
+        return completion.choices().stream()
+                .map(choice -> choice.message().content())
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.joining("\n\n"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.repository.AssignmentRepository;
+import com.example.newmoodle.repository.ObjectDeletionRepository;
+import com.example.newmoodle.repository.StoredObjectRepository;
+import com.example.newmoodle.repository.SubmissionRepository;
+import com.example.newmoodle.repository.UploadIntentRepository;
+import com.example.newmoodle.service.storage.StorageObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes bucket objects nothing refers to: files uploaded for a request whose DB insert failed,
+ * deletes that were lost before the outbox existed, derived images of deleted files. The bucket
+ * is walked one ListObjectsV2 page at a time and every page is checked with a few IN queries, so
+ * memory use does not grow with the bucket. Objects younger than the grace period are left
+ * alone because their DB row may simply not be committed yet.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrphanObjectCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrphanObjectCollector.class);
+    private static final int PAGE_SIZE = 1000;
+
+    private final FileService fileService;
+    private final AssignmentRepository assignmentRepository;
+    private final SubmissionRepository submissionRepository;
+    private final StoredObjectRepository storedObjectRepository;
+    private final UploadIntentRepository uploadIntentRepository;
+    private final ObjectDeletionRepository objectDeletionRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${storage.gc.enabled:false}")
+    private boolean enabled;
+
+    @Value("${storage.gc.grace-period-hours:24}")
+    private long gracePeriodHours;
+
+    @Value("${storage.gc.dry-run:false}")
+    private boolean dryRun;
+
+    private Counter scannedCounter;
+    private Counter deletedCounter;
+    private Timer runTimer;
+
+    @PostConstruct
+    void initMetrics() {
+        scannedCounter = Counter.builder("storage.gc.scanned").register(meterRegistry);
+        deletedCounter = Counter.builder("storage.gc.deleted").register(meterRegistry);
+        runTimer = Timer.builder("storage.gc.duration").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${storage.gc.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            run();
+        }
+    }
+
+    /**
+     * Runs one full pass over the bucket. Concurrent passes on other nodes are harmless, every
+     * delete is idempotent; on this node only one pass runs at a time.
+     */
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Orphan object collection is already running");
+            return;
+        }
+        long started = System.nanoTime();
+        long scanned = 0;
+        long orphaned = 0;
+        long deleted = 0;
+        try {
+            Instant cutoff = Instant.now().minus(Duration.ofHours(gracePeriodHours));
+            for (List<StorageObject> page : fileService.listObjectPages(PAGE_SIZE)) {
+                scanned += page.size();
+                List<String> orphans = findOrphans(page, cutoff);
+                orphaned += orphans.size();
+                if (orphans.isEmpty() || dryRun) {
+                    continue;
+                }
+                Map<String, String> failures = fileService.deleteObjects(orphans);
+                deleted += orphans.size() - failures.size();
+                failures.forEach((key, error) -> logger.warn("Could not delete orphaned object {}: {}", key, error));
+            }
+        } catch (Exception e) {
+            logger.error("Orphan object collection failed after scanning {} objects: {}", scanned, e.getMessage(), e);
+        } finally {
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+            scannedCounter.increment(scanned);
+            deletedCounter.increment(deleted);
+            runTimer.record(elapsed);
+            running.set(false);
+            logger.info("Orphan object collection finished in {} ms: scanned={}, orphaned={}, deleted={}{}",
+                    elapsed.toMillis(), scanned, orphaned, deleted, dryRun ? " (dry run)" : "");
+        }
+    }
+
+    private List<String> findOrphans(List<StorageObject> page, Instant cutoff) {
+        Set<String> candidates = new HashSet<>();
+        for (StorageObject object : page) {
+            if (object.lastModified() == null || object.lastModified().isBefore(cutoff)) {
+                candidates.add(object.key());
+                candidates.add(baseKey(object.key()));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        Set<String> referenced = new HashSet<>();
+        referenced.addAll(assignmentRepository.findReferencedFilePaths(candidates));
+        referenced.addAll(submissionRepository.findReferencedFileUrls(candidates));
+        referenced.addAll(storedObjectRepository.findReferencedKeys(candidates));
+        referenced.addAll(uploadIntentRepository.findReferencedKeys(candidates));
+        referenced.addAll(objectDeletionRepository.findQueuedKeys(candidates)); // The outbox deletes those itself
+
+        List<String> orphans = new ArrayList<>();
+        for (StorageObject object : page) {
+            String key = object.key();
+            if (candidates.contains(key) && !referenced.contains(key) && !referenced.contains(baseKey(key))) {
+                orphans.add(key);
+            }
+        }
+        return orphans;
+    }
+
+    /**
+     * Derived objects (e.g. {@code derived/<key>.vision-1536-q80.jpg}) live exactly as long as their source.
+     */
+    private String baseKey(String key) {
+        if (!key.startsWith(ImagePreprocessor.DERIVED_PREFIX)) {
+            return key;
+        }
+        String rest = key.substring(ImagePreprocessor.DERIVED_PREFIX.length());
+        int suffix = rest.lastIndexOf(".vision-");
+        return suffix > 0 ? rest.substring(0, suffix) : rest;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.newmoodle.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts text from a PDF that has been spooled to a local file.
+ * The file is opened through a {@link RandomAccessRead} instead of being read into a byte array,
+ * and PDFBox's scratch buffers go to temp files. Long documents are split into page ranges that are
+ * stripped in parallel; each range opens its own {@link PDDocument} because documents are not thread-safe.
+ * {@code maxPages} and {@code maxChars} bound the work per document.
+ */
+public class PdfTextExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfTextExtractor.class);
+
+    private final ForkJoinPool pool;
+    private final int maxPages;
+    private final int maxChars;
+    private final int pagesPerTask;
+    private final boolean memoryMapped;
+
+    public PdfTextExtractor(ForkJoinPool pool, int maxPages, int maxChars, int pagesPerTask, boolean memoryMapped) {
+        this.pool = pool;
+        this.maxPages = maxPages;
+        this.maxChars = maxChars;
+        this.pagesPerTask = Math.max(1, pagesPerTask);
+        this.memoryMapped = memoryMapped;
+    }
+
+    public String extract(Path pdfFile) throws IOException {
+        return extractDocument(pdfFile).text();
+    }
+
+    public ExtractedDocument extractDocument(Path pdfFile) throws IOException {
+        int pageCount;
+        try (PDDocument document = open(pdfFile)) {
+            if (document.isEncrypted()) {
+                logger.warn("Attempting to extract text from an encrypted PDF. Result may be empty or partial.");
+            }
+            pageCount = document.getNumberOfPages();
+            if (pageCount <= pagesPerTask) {
+                return new ExtractedDocument(limit(stripPages(document, 1, Math.min(pageCount, maxPages)), pageCount), pageCount);
+            }
+        }
+
+        int lastPage = Math.min(pageCount, maxPages);
+        List<Future<String>> ranges = new ArrayList<>();
+        for (int start = 1; start <= lastPage; start += pagesPerTask) {
+            int from = start;
+            int to = Math.min(start + pagesPerTask - 1, lastPage);
+            ranges.add(pool.submit(() -> stripRange(pdfFile, from, to)));
+        }
+
+        StringBuilder text = new StringBuilder();
+        try {
+            for (Future<String> range : ranges) {
+                if (text.length() >= maxChars) {
+                    range.cancel(true);
+                    continue;
+                }
+                text.append(range.get());
+            }
+        } catch (InterruptedException e) {
+            ranges.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting PDF text", e);
+        } catch (ExecutionException e) {
+            ranges.forEach(f -> f.cancel(true));
+            throw new IOException("Failed to parse PDF content: " + e.getCause().getMessage(), e.getCause());
+        }
+        logger.debug("Extracted text from {} of {} PDF pages in {} ranges", lastPage, pageCount, ranges.size());
+        return new ExtractedDocument(limit(text.toString(), pageCount), pageCount);
+    }
+
+    private String stripRange(Path pdfFile, int from, int to) throws IOException {
+        try (PDDocument document = open(pdfFile)) {
+            return stripPages(document, from, to);
+        }
+    }
+
+    private String stripPages(PDDocument document, int from, int to) throws IOException {
+        PDFTextStripper textStripper = new PDFTextStripper();
+        textStripper.setStartPage(from);
+        textStripper.setEndPage(to);
+        return textStripper.getText(document);
+    }
+
+    private PDDocument open(Path pdfFile) throws IOException {
+        RandomAccessRead source = memoryMapped
+                ? new RandomAccessReadMemoryMappedFile(pdfFile)
+                : new RandomAccessReadBufferedFile(pdfFile.toFile());
+        try {
+            return Loader.loadPDF(source, IOUtils.createTempFileOnlyStreamCache());
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    private String limit(String text, int pageCount) {
+        StringBuilder result = new StringBuilder(text.length() > maxChars ? text.substring(0, maxChars) : text);
+        if (text.length() > maxChars) {
+            result.append("\n[... text truncated after ").append(maxChars).append(" characters ...]");
+        }
+        if (pageCount > maxPages) {
+            result.append("\n[... only the first ").append(maxPages).append(" of ").append(pageCount).append(" pages were read ...]");
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.newmoodle.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The {@link LlmClient} everyone else gets: wraps the configured provider client ({@code llmBackend})
+ * so a slow or rate-limiting provider cannot tie up every request thread.
+ * <ul>
+ *     <li>Concurrency: calls take a slot from an {@link AdaptiveConcurrencyLimit}; callers that wait
+ *     longer than {@code llm.resilience.limit.acquire-timeout-ms} for one are rejected.</li>
+ *     <li>Retries: retryable failures are retried with full-jitter exponential backoff, or after the
+ *     provider's Retry-After if it sent one. Streams are only retried before their first delta.</li>
+ *     <li>Isolation: an {@link LlmCircuitBreaker} rejects calls right away while the provider is down.</li>
+ * </ul>
+ * Rejections throw {@link LlmClientException} with status 503, which the job worker retries later.
+ */
+@Service
+@Primary
+@RequiredArgsConstructor
+public class ResilientLlmClient implements LlmClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientLlmClient.class);
+
+    @Qualifier("llmBackend")
+    private final LlmClient delegate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${llm.resilience.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${llm.resilience.base-backoff-ms:500}")
+    private long baseBackoffMs;
+
+    @Value("${llm.resilience.max-backoff-ms:20000}")
+    private long maxBackoffMs;
+
+    @Value("${llm.resilience.max-retry-after-seconds:60}")
+    private long maxRetryAfterSeconds;
+
+    @Value("${llm.resilience.limit.initial:8}")
+    private int initialLimit;
+
+    @Value("${llm.resilience.limit.min:1}")
+    private int minLimit;
+
+    @Value("${llm.resilience.limit.max:16}")
+    private int maxLimit;
+
+    @Value("${llm.resilience.limit.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${llm.resilience.limit.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    @Value("${llm.resilience.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${llm.resilience.breaker.open-seconds:30}")
+    private long openSeconds;
+
+    private AdaptiveConcurrencyLimit limit;
+    private LlmCircuitBreaker breaker;
+
+    private Counter succeeded;
+    private Counter failed;
+    private Counter retried;
+    private Counter rejectedByBreaker;
+    private Counter rejectedByLimit;
+
+    @PostConstruct
+    void init() {
+        limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyTolerance, 0.5);
+        breaker = new LlmCircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds));
+
+        Gauge.builder("llm.limit", limit, AdaptiveConcurrencyLimit::getLimit).register(meterRegistry);
+        Gauge.builder("llm.inflight", limit, AdaptiveConcurrencyLimit::getInFlight).register(meterRegistry);
+        // 0 = closed, 1 = half-open, 2 = open
+        Gauge.builder("llm.circuit.state", breaker, b -> b.getState().ordinal()).register(meterRegistry);
+        succeeded = Counter.builder("llm.calls").tag("outcome", "success").register(meterRegistry);
+        failed = Counter.builder("llm.calls").tag("outcome", "failure").register(meterRegistry);
+        retried = Counter.builder("llm.retries").register(meterRegistry);
+        rejectedByBreaker = Counter.builder("llm.rejections").tag("reason", "circuit_open").register(meterRegistry);
+        rejectedByLimit = Counter.builder("llm.rejections").tag("reason", "limit").register(meterRegistry);
+    }
+
+    @Override
+    public String complete(LlmRequest request) {
+        return call(() -> delegate.complete(request), true, () -> true);
+    }
+
+    @Override
+    public String stream(LlmRequest request, Consumer<String> onDelta, StreamCancellation cancellation) {
+        AtomicBoolean emitted = new AtomicBoolean();
+        // Stream latency depends on the answer length, so only completions feed the latency gradient
+        return call(() -> delegate.stream(request, delta -> {
+            emitted.set(true);
+            onDelta.accept(delta);
+        }, cancellation), false, () -> !emitted.get() && !cancellation.isCancelled());
+    }
+
+    private String call(Supplier<String> attempt, boolean sampleLatency, BooleanSupplier canRetry) {
+        for (int attemptNo = 1; ; attemptNo++) {
+            if (!breaker.tryAcquire()) {
+                rejectedByBreaker.increment();
+                Duration retryAfter = breaker.remainingOpen();
+                throw new LlmClientException("LLM circuit is open, retry in " + retryAfter.toSeconds() + "s",
+                        503, retryAfter, null);
+            }
+            acquireSlot();
+
+            long start = System.nanoTime();
+            try {
+                String result = attempt.get();
+                limit.onSuccess(sampleLatency ? System.nanoTime() - start : -1);
+                breaker.onSuccess();
+                succeeded.increment();
+                return result;
+            } catch (LlmClientException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // Interrupted on our side (shutdown, lease handed over): says nothing about the provider
+                    limit.onIgnore();
+                    breaker.onIgnore();
+                    throw e;
+                }
+                if (!e.isRetryable()) {
+                    // The provider answered; the request itself was bad
+                    limit.onIgnore();
+                    breaker.onSuccess();
+                    throw e;
+                }
+                limit.onDropped();
+                breaker.onFailure(e.getRetryAfter());
+                failed.increment();
+
+                Duration backoff = backoff(attemptNo, e.getRetryAfter());
+                if (attemptNo >= maxAttempts || backoff == null || !canRetry.getAsBoolean()) {
+                    throw e;
+                }
+                retried.increment();
+                logger.warn("LLM call failed ({}), attempt {}/{}, retrying in {} ms",
+                        e.getMessage(), attemptNo, maxAttempts, backoff.toMillis());
+                sleep(backoff);
+            } catch (RuntimeException e) {
+                // Cancelled or failed on our side: says nothing about the provider
+                limit.onIgnore();
+                breaker.onIgnore();
+                throw e;
+            }
+        }
+    }
+
+    private void acquireSlot() {
+        boolean acquired;
+        try {
+            acquired = limit.acquire(acquireTimeoutMs);
+        } catch (InterruptedException e) {
+            breaker.onIgnore();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for an LLM slot");
+        }
+        if (!acquired) {
+            breaker.onIgnore();
+            rejectedByLimit.increment();
+            throw new LlmClientException("Too many concurrent LLM calls (limit " + limit.getLimit() + ")",
+                    503, null, null);
+        }
+    }
+
+    /**
+     * @return how long to wait before the next attempt, or null if the provider asked for longer than we accept
+     */
+    private Duration backoff(int attemptNo, Duration retryAfter) {
+        if (retryAfter != null) {
+            if (retryAfter.toSeconds() > maxRetryAfterSeconds) {
+                return null;
+            }
+            // Small jitter on top so callers told the same Retry-After don't return in lockstep
+            return retryAfter.plusMillis(ThreadLocalRandom.current().nextLong(baseBackoffMs + 1));
+        }
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attemptNo - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private void sleep(Duration backoff) {
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while backing off an LLM retry");
+        }
+    }
+}
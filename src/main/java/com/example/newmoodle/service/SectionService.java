@@ -9,6 +9,7 @@ import com.example.newmoodle.model.request.UserSummaryDto;
 import com.example.newmoodle.repository.AssignmentRepository;
 import com.example.newmoodle.repository.SectionRepository;
 import com.example.newmoodle.repository.SubjectRepository;
+import com.example.newmoodle.repository.SubmissionRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -28,6 +29,8 @@ public class SectionService {
     private final SubjectRepository subjectRepository;
     private final AssignmentRepository assignmentRepository;
     private final FileService fileService;
+    private final AssignmentContextCache assignmentContextCache;
+    private final SubmissionRepository submissionRepository;
 
 
     private UserSummaryDto mapUserToSummaryDTO(User user) {
@@ -178,12 +181,14 @@ public class SectionService {
 
         // Удаляем связанные задания и их файлы *напрямую*
         for (Assignment assignment : assignmentsToDelete) {
-            assignmentRepository.delete(assignment);
             // 1. Удаляем файл задания (если есть)
             if (assignment.getFilePath() != null && !assignment.getFilePath().isEmpty()) {
                 // Используем FileService, внедренный в SectionService
                 fileService.deleteFile(assignment.getFilePath());
             }
+            // 2. Файлы работ студентов; сами записи удаляются каскадом вместе с заданием
+            submissionRepository.findFileUrlsByAssignmentId(assignment.getId()).forEach(fileService::deleteFile);
+            assignmentContextCache.invalidate(assignment.getId());
 
             assignmentRepository.delete(assignment);
         }
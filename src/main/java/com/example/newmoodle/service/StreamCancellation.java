@@ -0,0 +1,65 @@
+package com.example.newmoodle.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets another thread (e.g. the servlet container noticing a client disconnect) abort a streaming
+ * LLM call. The client attaches the open upstream response; {@link #cancel()} closes it, which makes
+ * the blocked reader fail right away and releases the connection.
+ */
+public class StreamCancellation {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamCancellation.class);
+
+    private volatile boolean cancelled;
+    private AutoCloseable upstream;
+
+    public void cancel() {
+        AutoCloseable toClose;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toClose = upstream;
+            upstream = null;
+        }
+        closeQuietly(toClose);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers the open upstream response; closes it immediately if already cancelled.
+     */
+    public void attach(AutoCloseable response) {
+        synchronized (this) {
+            if (!cancelled) {
+                upstream = response;
+                return;
+            }
+        }
+        closeQuietly(response);
+    }
+
+    /**
+     * Forgets the upstream response once it has been fully read.
+     */
+    public synchronized void detach() {
+        upstream = null;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            logger.debug("Error closing cancelled LLM stream: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.newmoodle.service;
+
+/**
+ * Published when a submission to an assignment with pre-generated drafts was saved; handled after
+ * the transaction commits.
+ */
+public record SubmissionCreatedEvent(Long submissionId) {
+}
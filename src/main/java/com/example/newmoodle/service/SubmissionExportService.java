@@ -0,0 +1,157 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.model.Assignment;
+import com.example.newmoodle.model.Submission;
+import com.example.newmoodle.model.User;
+import com.example.newmoodle.repository.SubmissionRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams every submission of an assignment as one ZIP archive. While one file is written, the
+ * next few are already being downloaded, so the archive is produced at bucket speed while at most
+ * {@code export.zip.prefetch} objects are in memory and nothing touches the disk.
+ */
+@Service
+@RequiredArgsConstructor
+public class SubmissionExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionExportService.class);
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of("txt");
+
+    private final SubmissionRepository submissionRepository;
+    private final AssignmentService assignmentService;
+    private final FileService fileService;
+
+    @Value("${export.zip.prefetch:4}")
+    private int prefetch;
+
+    public record ExportEntry(String name, String key) {
+    }
+
+    /**
+     * Resolves archive entry names (student full name plus the file's extension) for the
+     * assignment's submissions. Only the assignment's teacher may export them.
+     */
+    @Transactional(readOnly = true)
+    public List<ExportEntry> prepareExport(Long assignmentId, User teacher) {
+        Assignment assignment = assignmentService.getAssignmentById(assignmentId);
+        if (!assignment.getTeacher().equals(teacher)) {
+            throw new AccessDeniedException("User is not the teacher of this assignment and cannot export its submissions.");
+        }
+
+        Set<String> usedNames = new HashSet<>();
+        return submissionRepository.findByAssignmentId(assignmentId).stream()
+                .map(submission -> new ExportEntry(uniqueName(entryBaseName(submission),
+                        fileService.getExtension(fileService.getDisplayFileName(submission.getFileUrl(), submission.getFileName())), usedNames),
+                        submission.getFileUrl()))
+                .toList();
+    }
+
+    public String archiveName(Long assignmentId) {
+        return sanitize(assignmentService.getAssignmentById(assignmentId).getTitle()) + "_submissions.zip";
+    }
+
+    public void writeZip(List<ExportEntry> entries, OutputStream out) throws IOException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            Iterator<ExportEntry> pending = entries.iterator();
+            Deque<CompletableFuture<byte[]>> window = new ArrayDeque<>();
+            Deque<ExportEntry> windowEntries = new ArrayDeque<>();
+            fill(pending, window, windowEntries, executor);
+
+            while (!window.isEmpty()) {
+                ExportEntry entry = windowEntries.poll();
+                byte[] content;
+                try {
+                    content = window.poll().join();
+                } catch (CompletionException e) {
+                    logger.warn("Skipping {} in submission export: {}", entry.key(), e.getCause().getMessage());
+                    fill(pending, window, windowEntries, executor);
+                    continue;
+                }
+                // Start the next download before writing this one so the window stays full
+                fill(pending, window, windowEntries, executor);
+                writeEntry(zip, entry.name(), content);
+            }
+            zip.finish();
+        } catch (IOException e) {
+            // Usually the client went away; stop downloading the rest of the archive
+            logger.info("Submission export aborted: {}", e.getMessage());
+            throw e;
+        }
+    }
+
+    private void fill(Iterator<ExportEntry> pending, Deque<CompletableFuture<byte[]>> window,
+                      Deque<ExportEntry> windowEntries, ExecutorService executor) {
+        while (window.size() < Math.max(1, prefetch) && pending.hasNext()) {
+            ExportEntry entry = pending.next();
+            windowEntries.add(entry);
+            window.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fileService.downloadFileAsBytes(entry.key());
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+    }
+
+    private void writeEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        String extension = fileService.getExtension(name);
+        if (!COMPRESSIBLE_EXTENSIONS.contains(extension)) {
+            // PDF, DOCX and images are already compressed; storing them saves CPU for nothing lost
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private String entryBaseName(Submission submission) {
+        User student = submission.getStudent();
+        String fullName = student != null ? student.getFullName() : null;
+        return fullName != null && !fullName.isBlank() ? sanitize(fullName) : "submission_" + submission.getId();
+    }
+
+    private String uniqueName(String baseName, String extension, Set<String> usedNames) {
+        String suffix = extension.isEmpty() ? "" : "." + extension;
+        String name = baseName + suffix;
+        for (int i = 2; !usedNames.add(name); i++) {
+            name = baseName + " (" + i + ")" + suffix;
+        }
+        return name;
+    }
+
+    private String sanitize(String name) {
+        // Keep letters in any script (student names are often Cyrillic), drop path and control characters
+        return name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+    }
+}
@@ -2,10 +2,14 @@ package com.example.newmoodle.service;
 
 import com.example.newmoodle.dto.AssignmentSimpleDto;
 import com.example.newmoodle.dto.SubmissionDto;
+import com.example.newmoodle.dto.UploadUrlDto;
 import com.example.newmoodle.dto.UserSimpleDto;
 import com.example.newmoodle.model.*;
+import com.example.newmoodle.model.request.UploadUrlRequest;
 import com.example.newmoodle.repository.SubmissionRepository;
+import com.example.newmoodle.service.storage.StorageObject;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,6 +17,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,24 +28,86 @@ public class SubmissionService {
     private final AssignmentService assignmentService;
     private final SectionService sectionService;
     private final FileService fileService;
+    private final UploadIntentService uploadIntentService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Submission createSubmission(User user, MultipartFile file, Long assignmentId, Long sectionId) throws IOException {
-        Section section = sectionService.getSectionById(sectionId);
-        if(!section.getStudents().contains(user)) {
-            throw new IllegalArgumentException("User is not a Student");
+        Assignment assignment = checkCanSubmit(user, assignmentId, sectionId);
+
+        FileReference stored = fileService.uploadFile(file);
+        var submission = Submission.builder()
+                .assignment(assignment)
+                .fileUrl(stored.key())
+                .fileName(stored.fileName())
+                .student(user)
+                .status(SubmissionStatus.PENDING)
+                .grade(null)
+                .build();
+        return saveNewSubmission(submission);
+    }
+
+    /**
+     * First phase of a direct upload: the same checks as {@link #createSubmission}, then a presigned PUT URL.
+     */
+    @Transactional
+    public UploadUrlDto createUploadUrl(User user, Long assignmentId, Long sectionId, UploadUrlRequest request) {
+        checkCanSubmit(user, assignmentId, sectionId);
+        return uploadIntentService.createIntent(user, sectionId, assignmentId, request);
+    }
+
+    /**
+     * Second phase of a direct upload: verifies with a HEAD request that the object the client PUT
+     * matches what it declared, then creates the submission exactly like {@link #createSubmission}.
+     */
+    @Transactional
+    public Submission finalizeDirectUpload(User user, String key, Long assignmentId, Long sectionId) throws IOException {
+        Assignment assignment = checkCanSubmit(user, assignmentId, sectionId);
+        UploadIntent intent = uploadIntentService.getIntent(key, user, sectionId, assignmentId);
+
+        StorageObject head = fileService.headObject(key);
+        if (head == null) {
+            throw new IllegalArgumentException("File " + key + " has not been uploaded yet");
         }
-        Assignment assignment = assignmentService.getAssignmentById(assignmentId);
+        if (head.size() != intent.getSizeBytes() || !intent.getContentType().equalsIgnoreCase(head.contentType())) {
+            uploadIntentService.reject(intent);
+            throw new IllegalArgumentException("Uploaded file does not match the declared size or content type");
+        }
+        fileService.catalogDirectUpload(key, intent.getFileName(), head);
 
-        String filename = fileService.uploadFile(file);
         var submission = Submission.builder()
                 .assignment(assignment)
-                .fileUrl(filename)
+                .fileUrl(key)
+                .fileName(intent.getFileName())
                 .student(user)
                 .status(SubmissionStatus.PENDING)
                 .grade(null)
                 .build();
-        return submissionRepository.save(submission);
+        uploadIntentService.delete(intent);
+        return saveNewSubmission(submission);
+    }
+
+    /**
+     * The user must be a student of the section, and the assignment must belong to it.
+     */
+    private Assignment checkCanSubmit(User user, Long assignmentId, Long sectionId) {
+        Section section = sectionService.getSectionById(sectionId);
+        if(!section.getStudents().contains(user)) {
+            throw new AccessDeniedException("User is not a Student of this section");
+        }
+        Assignment assignment = assignmentService.getAssignmentById(assignmentId);
+        if (!assignment.getSection().getId().equals(sectionId)) {
+            throw new IllegalArgumentException("Assignment " + assignmentId + " does not belong to section " + sectionId);
+        }
+        return assignment;
+    }
+
+    private Submission saveNewSubmission(Submission submission) {
+        Submission saved = submissionRepository.save(submission);
+        if (saved.getAssignment().isPregenerateDrafts()) {
+            eventPublisher.publishEvent(new SubmissionCreatedEvent(saved.getId()));
+        }
+        return saved;
     }
 
     public Submission getSubmissionById(Long id) {
@@ -48,13 +115,44 @@ public class SubmissionService {
                 .orElseThrow(() -> new IllegalArgumentException("Submission with id " + id + " not found"));
     }
 
+    /**
+     * Like {@link #getSubmissionById}, but row-locks the submission for the rest of the calling
+     * transaction, so check-then-insert logic keyed by submission is serialized across nodes.
+     */
+    public Submission lockSubmission(Long id) {
+        return submissionRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new IllegalArgumentException("Submission with id " + id + " not found"));
+    }
+
+    /**
+     * The submitted file, readable by the submitting student and the assignment's teacher.
+     */
+    @Transactional(readOnly = true)
+    public FileReference getSubmissionFile(Long id, User user) {
+        Submission submission = getSubmissionById(id);
+        if (!submission.getStudent().equals(user) && !submission.getAssignment().getTeacher().equals(user)) {
+            throw new AccessDeniedException("User is not allowed to read this submission.");
+        }
+        return new FileReference(submission.getFileUrl(), submission.getFileName());
+    }
+
+    /**
+     * Loads a submission together with its assignment so it can be used outside a transaction
+     * (e.g. by feedback workers) without lazy-loading errors.
+     */
+    public Submission getSubmissionWithAssignment(Long id) {
+        return submissionRepository.findWithAssignmentById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Submission with id " + id + " not found"));
+    }
+
     public List<SubmissionDto> getSubmissionsByAssignmentId(Long assignmentId) {
         assignmentService.getAssignmentById(assignmentId);
 
         List<Submission> submissions = submissionRepository.findByAssignmentId(assignmentId);
 
+        Map<String, StoredFile> files = fileService.getFileInfos(submissions.stream().map(Submission::getFileUrl).toList());
         List<SubmissionDto> submissionDtos = submissions.stream()
-                .map(this::mapToSubmissionDto)
+                .map(submission -> mapToSubmissionDto(submission, files.get(submission.getFileUrl())))
                 .collect(Collectors.toList());
 
         // 4. Возвращаем список DTO
@@ -65,6 +163,11 @@ public class SubmissionService {
         submissionRepository.save(submission);
     }
 
+    @Transactional
+    public void updateStatus(Long submissionId, SubmissionStatus status) {
+        submissionRepository.updateStatus(submissionId, status);
+    }
+
     @Transactional
     public SubmissionDto gradeSubmission(Long submissionId, Integer grade, User teacher) {
         Submission submission = submissionRepository.findById(submissionId)
@@ -118,9 +221,14 @@ public class SubmissionService {
 
     public SubmissionDto mapToSubmissionDto(Submission submission) {
         if (submission == null) return null;
+        return mapToSubmissionDto(submission, fileService.getFileInfo(submission.getFileUrl()).orElse(null));
+    }
+
+    private SubmissionDto mapToSubmissionDto(Submission submission, StoredFile file) {
         return SubmissionDto.builder()
                 .id(submission.getId())
                 .fileUrl(submission.getFileUrl()) // Может быть, здесь нужен полный URL? fileService.getFileUrl(submission.getFileUrl())
+                .file(fileService.mapToFileInfoDto(file, submission.getFileName()))
                 .status(submission.getStatus())
                 .grade(submission.getGrade())
                 .student(mapToUserSimpleDto(submission.getStudent()))
@@ -0,0 +1,129 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.dto.UploadUrlDto;
+import com.example.newmoodle.model.UploadIntent;
+import com.example.newmoodle.model.User;
+import com.example.newmoodle.model.request.UploadUrlRequest;
+import com.example.newmoodle.repository.UploadIntentRepository;
+import com.example.newmoodle.service.storage.SignedUrl;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * First phase of the direct-to-bucket upload flow: issues presigned PUT URLs for server-generated
+ * keys and remembers what the client declared, so the finalize step can verify the stored object.
+ * Whether the user may submit to the assignment is checked by {@link SubmissionService#createUploadUrl}.
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadIntentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadIntentService.class);
+
+    private final UploadIntentRepository uploadIntentRepository;
+    private final FileService fileService;
+
+    @Value("${storage.direct-upload.url-validity-minutes:15}")
+    private long urlValidityMinutes;
+
+    @Value("${storage.direct-upload.finalize-window-minutes:60}")
+    private long finalizeWindowMinutes;
+
+    @Value("${storage.direct-upload.max-size-bytes:52428800}")
+    private long maxSizeBytes;
+
+    @Transactional
+    public UploadUrlDto createIntent(User user, Long sectionId, Long assignmentId, UploadUrlRequest request) {
+        if (request.getSize() <= 0 || request.getSize() > maxSizeBytes) {
+            throw new IllegalArgumentException("File size must be between 1 and " + maxSizeBytes + " bytes");
+        }
+        String key = fileService.newObjectKey(request.getFileName());
+        Duration validity = Duration.ofMinutes(urlValidityMinutes);
+        SignedUrl presigned = fileService.presignUpload(key, request.getContentType(), request.getSize(), validity);
+
+        LocalDateTime now = LocalDateTime.now();
+        uploadIntentRepository.save(UploadIntent.builder()
+                .objectKey(key)
+                .userId(user.getId())
+                .sectionId(sectionId)
+                .assignmentId(assignmentId)
+                .fileName(request.getFileName())
+                .contentType(request.getContentType())
+                .sizeBytes(request.getSize())
+                // The client may start the PUT just before the URL expires, so leave room to finalize
+                .expiresAt(now.plus(validity).plusMinutes(finalizeWindowMinutes))
+                .createdAt(now)
+                .build());
+
+        return UploadUrlDto.builder()
+                .key(key)
+                .uploadUrl(presigned.url().toString())
+                .method("PUT")
+                .headers(presigned.headers())
+                .expiresAt(now.plus(validity))
+                .build();
+    }
+
+    /**
+     * Looks up the intent for {@code key} and checks it belongs to this user and target.
+     */
+    public UploadIntent getIntent(String key, User user, Long sectionId, Long assignmentId) {
+        UploadIntent intent = uploadIntentRepository.findByObjectKey(key)
+                .orElseThrow(() -> new NoSuchElementException("No pending upload with key " + key));
+        if (!intent.getUserId().equals(user.getId())) {
+            throw new AccessDeniedException("Upload " + key + " belongs to another user");
+        }
+        if (!intent.getSectionId().equals(sectionId) || !intent.getAssignmentId().equals(assignmentId)) {
+            throw new IllegalArgumentException("Upload " + key + " was issued for a different assignment");
+        }
+        if (intent.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Upload " + key + " has expired");
+        }
+        return intent;
+    }
+
+    public void delete(UploadIntent intent) {
+        uploadIntentRepository.delete(intent);
+    }
+
+    /**
+     * Drops an upload that failed verification, together with the object. Runs in its own
+     * transaction so the cleanup sticks even though the caller's transaction rolls back on the error.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void reject(UploadIntent intent) {
+        fileService.deleteFile(intent.getObjectKey());
+        uploadIntentRepository.deleteById(intent.getId());
+    }
+
+    /**
+     * Removes intents that were never finalized, together with anything the client managed to upload.
+     */
+    @Scheduled(fixedDelayString = "${storage.direct-upload.cleanup-interval-ms:600000}")
+    public void purgeExpired() {
+        List<UploadIntent> expired = uploadIntentRepository.findTop100ByExpiresAtBefore(LocalDateTime.now());
+        for (UploadIntent intent : expired) {
+            try {
+                fileService.deleteFile(intent.getObjectKey());
+                uploadIntentRepository.delete(intent);
+            } catch (RuntimeException e) {
+                logger.warn("Could not purge expired upload {}: {}", intent.getObjectKey(), e.getMessage());
+            }
+        }
+        if (!expired.isEmpty()) {
+            logger.info("Purged {} expired upload intents", expired.size());
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.example.newmoodle.service.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stores objects under {@code storage.local.root}, sharded as {@code <root>/ab/cd/<encoded key>}
+ * where {@code abcd} are the first hex digits of SHA-256(key), so no directory grows past a few
+ * thousand entries. Writes go to a temp file in the target directory and are moved into place
+ * atomically; copies and downloads use FileChannel transfers so file bytes stay in the kernel.
+ * Browser URLs are HMAC-signed tokens served by {@code LocalStorageController}.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalDiskStorageBackend implements StorageBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalDiskStorageBackend.class);
+    private static final String CONTENT_TYPE_ATTRIBUTE = "content-type";
+    private static final String TEMP_SUFFIX = ".part";
+    public static final String TOKEN_PATH = "/api/v1/storage/local/";
+
+    @Value("${storage.local.root:uploads}")
+    private String rootDirectory;
+
+    @Value("${storage.local.signing-secret:}")
+    private String signingSecret;
+
+    @Value("${storage.local.public-base-url:}")
+    private String publicBaseUrl;
+
+    private Path root;
+    private SecretKeySpec signingKey;
+
+    public enum TokenMode { GET, PUT }
+
+    /**
+     * Decoded, verified URL token.
+     */
+    public record Token(TokenMode mode, String key, Instant expiresAt, String contentType, long contentLength, String fileName) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        root = Paths.get(rootDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        byte[] secret;
+        if (signingSecret == null || signingSecret.isBlank()) {
+            // URLs then stop working after a restart, which is fine for a single dev/test node
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            logger.warn("storage.local.signing-secret is not set; using a random key for this process");
+        } else {
+            secret = signingSecret.getBytes(StandardCharsets.UTF_8);
+        }
+        signingKey = new SecretKeySpec(secret, "HmacSHA256");
+        logger.info("Local disk storage at {}", root);
+    }
+
+    @Override
+    public String put(String key, Path file, String contentType) throws IOException {
+        Path target = pathFor(key);
+        Path temp = tempFileNextTo(target);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel destination = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            long size = source.size();
+            long copied = 0;
+            while (copied < size) {
+                copied += destination.transferFrom(source, copied, size - copied);
+            }
+            destination.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return commit(temp, target, contentType);
+    }
+
+    @Override
+    public String put(String key, byte[] content, String contentType) throws IOException {
+        Path target = pathFor(key);
+        Path temp = tempFileNextTo(target);
+        try (FileChannel destination = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                destination.write(buffer);
+            }
+            destination.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return commit(temp, target, contentType);
+    }
+
+    /**
+     * Stores a request body streamed in by the token upload endpoint.
+     */
+    public String put(String key, InputStream content, String contentType) throws IOException {
+        Path target = pathFor(key);
+        Path temp = tempFileNextTo(target);
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return commit(temp, target, contentType);
+    }
+
+    @Override
+    public StorageObject head(String key) throws IOException {
+        Path path = pathFor(key);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return toStorageObject(key, path, attributes);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return Files.newInputStream(pathFor(key));
+        } catch (NoSuchFileException e) {
+            logger.warn("File not found in local storage with key: {}", key);
+            return null;
+        }
+    }
+
+    @Override
+    public ObjectDownload get(String key, String range, String ifNoneMatch, Instant ifModifiedSince) throws IOException {
+        StorageObject object = head(key);
+        if (object == null) {
+            return null;
+        }
+        Path path = pathFor(key);
+
+        if (notModified(object, ifNoneMatch, ifModifiedSince)) {
+            return ObjectDownload.builder().status(304).eTag(object.eTag()).lastModified(object.lastModified()).build();
+        }
+
+        long size = object.size();
+        long start = 0;
+        long length = size;
+        String contentRange = null;
+        long[] parsed = parseRange(range, size);
+        if (parsed != null) {
+            if (parsed.length == 0) {
+                return ObjectDownload.builder().status(416).eTag(object.eTag()).contentRange("bytes */" + size).build();
+            }
+            start = parsed[0];
+            length = parsed[1] - parsed[0] + 1;
+            contentRange = "bytes " + parsed[0] + "-" + parsed[1] + "/" + size;
+        }
+        return ObjectDownload.builder()
+                .status(contentRange != null ? 206 : 200)
+                .eTag(object.eTag())
+                .lastModified(object.lastModified())
+                .contentType(object.contentType())
+                .contentLength(length)
+                .contentRange(contentRange)
+                .file(path)
+                .position(start)
+                .build();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathFor(key));
+        logger.info("Deleted object from local storage with key: {}", key);
+    }
+
+    @Override
+    public Map<String, String> deleteAll(List<String> keys) {
+        Map<String, String> failures = new HashMap<>();
+        for (String key : keys) {
+            try {
+                Files.deleteIfExists(pathFor(key));
+            } catch (IOException e) {
+                failures.put(key, e.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public Iterable<List<StorageObject>> list(int pageSize) {
+        return () -> new PageIterator(pageSize);
+    }
+
+    @Override
+    public SignedUrl downloadUrl(String key, String fileName, String contentType, Duration validity) {
+        Instant expiresAt = Instant.now().plus(validity).truncatedTo(ChronoUnit.SECONDS);
+        String token = sign(new Token(TokenMode.GET, key, expiresAt, contentType, -1, fileName));
+        return new SignedUrl(URI.create(publicBaseUrl + TOKEN_PATH + token), expiresAt, Map.of());
+    }
+
+    @Override
+    public SignedUrl uploadUrl(String key, String contentType, long contentLength, Duration validity) {
+        Instant expiresAt = Instant.now().plus(validity).truncatedTo(ChronoUnit.SECONDS);
+        String token = sign(new Token(TokenMode.PUT, key, expiresAt, contentType, contentLength, null));
+        return new SignedUrl(URI.create(publicBaseUrl + TOKEN_PATH + token), expiresAt, Map.of("Content-Type", contentType));
+    }
+
+    /**
+     * Checks the token's signature and expiry.
+     * @throws IllegalArgumentException if the token is malformed, forged or expired.
+     */
+    public Token verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            throw new IllegalArgumentException("Malformed storage token");
+        }
+        String payload = token.substring(0, dot);
+        byte[] expected = hmac(payload);
+        byte[] actual;
+        try {
+            actual = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed storage token");
+        }
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new IllegalArgumentException("Invalid storage token signature");
+        }
+
+        String[] fields = new String(Base64.getUrlDecoder().decode(payload), StandardCharsets.UTF_8).split("\n", -1);
+        Token decoded = new Token(TokenMode.valueOf(fields[0]), fields[1], Instant.ofEpochSecond(Long.parseLong(fields[2])),
+                fields[3].isEmpty() ? null : fields[3], Long.parseLong(fields[4]), fields[5].isEmpty() ? null : fields[5]);
+        if (decoded.expiresAt().isBefore(Instant.now())) {
+            throw new IllegalArgumentException("Storage token has expired");
+        }
+        return decoded;
+    }
+
+    private String sign(Token token) {
+        String fields = String.join("\n", token.mode().name(), token.key(), String.valueOf(token.expiresAt().getEpochSecond()),
+                token.contentType() != null ? token.contentType() : "", String.valueOf(token.contentLength()),
+                token.fileName() != null ? token.fileName() : "");
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(fields.getBytes(StandardCharsets.UTF_8));
+        return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(hmac(payload));
+    }
+
+    private byte[] hmac(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(signingKey);
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    Path pathFor(String key) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        String hex = HexFormat.of().formatHex(hash, 0, 2);
+        // Encoding turns '/' (derived keys) and '..' into plain characters, so a key cannot escape the root
+        String fileName = URLEncoder.encode(key, StandardCharsets.UTF_8).replace(".", "%2E");
+        return root.resolve(hex.substring(0, 2)).resolve(hex.substring(2, 4)).resolve(fileName);
+    }
+
+    private Path tempFileNextTo(Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        return Files.createTempFile(target.getParent(), ".upload-", TEMP_SUFFIX);
+    }
+
+    private String commit(Path temp, Path target, String contentType) throws IOException {
+        if (contentType != null) {
+            writeContentType(temp, contentType);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return eTag(Files.readAttributes(target, BasicFileAttributes.class));
+    }
+
+    private StorageObject toStorageObject(String key, Path path, BasicFileAttributes attributes) {
+        return new StorageObject(key, attributes.size(), eTag(attributes), readContentType(path, key),
+                attributes.lastModifiedTime().toInstant());
+    }
+
+    /**
+     * Size plus modification time in nanoseconds: changes whenever the file is replaced.
+     */
+    private String eTag(BasicFileAttributes attributes) {
+        return "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)) + "\"";
+    }
+
+    private void writeContentType(Path path, String contentType) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        try {
+            view.write(CONTENT_TYPE_ATTRIBUTE, StandardCharsets.UTF_8.encode(contentType));
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Cannot store content type as an extended attribute on {}: {}", path, e.getMessage());
+        }
+    }
+
+    private String readContentType(Path path, String key) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view != null) {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(view.size(CONTENT_TYPE_ATTRIBUTE));
+                view.read(CONTENT_TYPE_ATTRIBUTE, buffer);
+                buffer.flip();
+                return StandardCharsets.UTF_8.decode(buffer).toString();
+            } catch (IOException | UnsupportedOperationException e) {
+                // Not stored (or not supported by the filesystem), fall back to the extension
+            }
+        }
+        String guessed = URLConnection.guessContentTypeFromName(key);
+        return guessed != null ? guessed : "application/octet-stream";
+    }
+
+    private boolean notModified(StorageObject object, String ifNoneMatch, Instant ifModifiedSince) {
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(object.eTag())) {
+                    return true;
+                }
+            }
+            return false; // If-None-Match takes precedence over If-Modified-Since (RFC 9110, 13.1.3)
+        }
+        return ifModifiedSince != null
+                && !object.lastModified().truncatedTo(ChronoUnit.SECONDS).isAfter(ifModifiedSince);
+    }
+
+    /**
+     * @return null to serve the whole file, {start, end} for one satisfiable range, or an empty
+     * array if the range cannot be satisfied. Multi-range requests are answered with the whole file.
+     */
+    private long[] parseRange(String range, long size) {
+        if (range == null || !range.startsWith("bytes=") || range.contains(",")) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return new long[0];
+                }
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size || end < start) {
+                return new long[0];
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Walks the shard directories lazily, returning up to {@code pageSize} objects per page.
+     */
+    private final class PageIterator implements Iterator<List<StorageObject>> {
+        private final int pageSize;
+        private final Stream<Path> files;
+        private final Iterator<Path> paths;
+        private List<StorageObject> next;
+
+        private PageIterator(int pageSize) {
+            this.pageSize = pageSize;
+            try {
+                this.files = Files.walk(root, 3).filter(p -> p.getNameCount() - root.getNameCount() == 3)
+                        .filter(p -> !p.getFileName().toString().endsWith(TEMP_SUFFIX))
+                        .filter(Files::isRegularFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.paths = files.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = fetch();
+            }
+            return !next.isEmpty();
+        }
+
+        @Override
+        public List<StorageObject> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<StorageObject> page = next;
+            next = null;
+            return page;
+        }
+
+        private List<StorageObject> fetch() {
+            List<StorageObject> page = new ArrayList<>(pageSize);
+            while (page.size() < pageSize && paths.hasNext()) {
+                Path path = paths.next();
+                String key = URLDecoder.decode(path.getFileName().toString(), StandardCharsets.UTF_8);
+                try {
+                    page.add(toStorageObject(key, path, Files.readAttributes(path, BasicFileAttributes.class)));
+                } catch (IOException e) {
+                    logger.debug("Skipping {} while listing: {}", path, e.getMessage()); // Deleted meanwhile
+                }
+            }
+            if (page.isEmpty()) {
+                files.close();
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.newmoodle.service.storage;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Result of a (possibly ranged or conditional) object download. {@code status} is the HTTP status
+ * the backend answered with: 200, 206, 304 or 416. Only 200 and 206 carry a body, either as a
+ * stream or, for files on local disk, as a region of {@code file} that can be sent without copying.
+ */
+@Getter
+@Builder
+public class ObjectDownload implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // One buffer per request thread, reused for every download that thread serves
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private final int status;
+    private final String eTag;
+    private final Instant lastModified;
+    private final String contentType;
+    private final Long contentLength;
+    private final String contentRange;
+    private final InputStream body;
+    private final Path file;
+    private final long position;
+
+    public boolean hasBody() {
+        return body != null || file != null;
+    }
+
+    /**
+     * Copies the body to {@code out} chunk by chunk; the object is never held in memory as a whole.
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        if (file != null) {
+            return transferFile(out);
+        }
+        if (body == null) {
+            return 0;
+        }
+        byte[] buffer = BUFFER.get();
+        long total = 0;
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    private long transferFile(OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long remaining = contentLength;
+            long offset = position;
+            while (remaining > 0) {
+                long sent = channel.transferTo(offset, remaining, target);
+                if (sent <= 0) {
+                    break; // File shrank underneath us
+                }
+                offset += sent;
+                remaining -= sent;
+            }
+            return contentLength - remaining;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (body != null) {
+            body.close();
+        }
+    }
+}
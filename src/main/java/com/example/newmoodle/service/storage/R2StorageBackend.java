@@ -0,0 +1,239 @@
+package com.example.newmoodle.service.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Cloudflare R2 (or any S3-compatible bucket) through the clients from {@code R2Config}.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "r2", matchIfMissing = true)
+@RequiredArgsConstructor
+public class R2StorageBackend implements StorageBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2StorageBackend.class);
+    private static final int MAX_KEYS_PER_DELETE = 1000; // DeleteObjects limit
+
+    private final S3Client s3Client;
+    private final S3Presigner s3Presigner;
+    private final S3MultipartUploader multipartUploader;
+
+    @Value("${aws.s3.bucket-name}")
+    private String bucketName;
+
+    @Override
+    public String put(String key, Path file, String contentType) throws IOException {
+        return multipartUploader.upload(key, file, contentType);
+    }
+
+    @Override
+    public String put(String key, byte[] content, String contentType) throws IOException {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .build();
+        try {
+            return s3Client.putObject(putObjectRequest, RequestBody.fromBytes(content)).eTag();
+        } catch (S3Exception e) {
+            logger.error("S3 Error uploading bytes with key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
+            throw new IOException("Failed to upload file to R2/S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public StorageObject head(String key) throws IOException {
+        try {
+            HeadObjectResponse head = s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build());
+            return new StorageObject(key, head.contentLength(), head.eTag(), head.contentType(), head.lastModified());
+        } catch (NoSuchKeyException e) {
+            logger.debug("File not found in R2/S3 with key: {}", key);
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            logger.error("S3 Error reading metadata for key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
+            throw new IOException("Failed to read file metadata from R2/S3 for key: " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) {
+        try {
+            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build();
+            logger.debug("Requesting input stream for key: {}", key);
+            return s3Client.getObject(getObjectRequest);
+        } catch (NoSuchKeyException e) {
+            logger.warn("File not found in R2/S3 with key: {}", key);
+            return null;
+        } catch (S3Exception e) {
+            logger.error("S3 Error downloading file stream for key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public ObjectDownload get(String key, String range, String ifNoneMatch, Instant ifModifiedSince) throws IOException {
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range(range)
+                .ifNoneMatch(ifNoneMatch);
+        if (ifNoneMatch == null) {
+            // If-None-Match takes precedence over If-Modified-Since (RFC 9110, 13.1.3)
+            request.ifModifiedSince(ifModifiedSince);
+        }
+        try {
+            ResponseInputStream<GetObjectResponse> stream = s3Client.getObject(request.build());
+            GetObjectResponse response = stream.response();
+            return ObjectDownload.builder()
+                    .status(response.contentRange() != null ? 206 : 200)
+                    .eTag(response.eTag())
+                    .lastModified(response.lastModified())
+                    .contentType(response.contentType())
+                    .contentLength(response.contentLength())
+                    .contentRange(response.contentRange())
+                    .body(stream)
+                    .build();
+        } catch (NoSuchKeyException e) {
+            logger.warn("File not found in R2/S3 with key: {}", key);
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 304 || e.statusCode() == 416) {
+                return ObjectDownload.builder()
+                        .status(e.statusCode())
+                        .eTag(e.awsErrorDetails().sdkHttpResponse().firstMatchingHeader("ETag").orElse(null))
+                        .build();
+            }
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            logger.error("S3 Error downloading file stream for key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
+            throw new IOException("Failed to download file from R2/S3 for key: " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build());
+            logger.info("Deleted object from R2/S3 with key: {}", key);
+        } catch (S3Exception e) {
+            logger.error("S3 Error deleting file with key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
+            throw new IOException("Failed to delete file from R2/S3 for key: " + key, e);
+        }
+    }
+
+    @Override
+    public Map<String, String> deleteAll(List<String> keys) {
+        Map<String, String> failures = new HashMap<>();
+        for (int from = 0; from < keys.size(); from += MAX_KEYS_PER_DELETE) {
+            List<String> chunk = keys.subList(from, Math.min(keys.size(), from + MAX_KEYS_PER_DELETE));
+            try {
+                DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucketName)
+                        .delete(Delete.builder()
+                                .objects(chunk.stream().map(k -> ObjectIdentifier.builder().key(k).build()).toList())
+                                .quiet(true) // Only errors are reported back
+                                .build())
+                        .build());
+                for (S3Error error : response.errors()) {
+                    failures.put(error.key(), error.code() + ": " + error.message());
+                }
+            } catch (S3Exception e) {
+                String message = e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
+                logger.error("S3 Error deleting {} objects: {}", chunk.size(), message, e);
+                chunk.forEach(k -> failures.put(k, String.valueOf(message)));
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public Iterable<List<StorageObject>> list(int pageSize) {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .maxKeys(pageSize)
+                .build();
+        return () -> s3Client.listObjectsV2Paginator(request).stream()
+                .map(page -> page.contents().stream()
+                        .map(o -> new StorageObject(o.key(), o.size(), o.eTag(), null, o.lastModified()))
+                        .toList())
+                .iterator();
+    }
+
+    @Override
+    public SignedUrl downloadUrl(String key, String fileName, String contentType, Duration validity) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .responseContentDisposition(ContentDisposition.attachment()
+                        .filename(fileName, StandardCharsets.UTF_8)
+                        .build().toString())
+                .responseContentType(contentType)
+                .build();
+        PresignedGetObjectRequest presigned = s3Presigner.presignGetObject(GetObjectPresignRequest.builder()
+                .signatureDuration(validity)
+                .getObjectRequest(getObjectRequest)
+                .build());
+        return new SignedUrl(URI.create(presigned.url().toString()), presigned.expiration(), Map.of());
+    }
+
+    /**
+     * Content type and length are signed headers, so the client cannot send anything other than
+     * what it declared.
+     */
+    @Override
+    public SignedUrl uploadUrl(String key, String contentType, long contentLength, Duration validity) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .build();
+        PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(validity)
+                .putObjectRequest(putObjectRequest)
+                .build());
+        Map<String, String> headers = presigned.signedHeaders().entrySet().stream()
+                .filter(e -> !e.getKey().equalsIgnoreCase("host"))
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> String.join(",", e.getValue())));
+        return new SignedUrl(URI.create(presigned.url().toString()), presigned.expiration(), headers);
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.newmoodle.service.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Uploads a local file to the bucket. Files below the threshold go out as a single PutObject
+ * straight from disk; larger files use S3 multipart upload, with each part read from a
+ * memory-mapped slice of the file and sent in parallel on the upload executor.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "r2", matchIfMissing = true)
+@RequiredArgsConstructor
+public class S3MultipartUploader {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3MultipartUploader.class);
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024; // S3 lower bound for all but the last part
+
+    private final S3Client s3Client;
+    @Qualifier("uploadExecutor")
+    private final ThreadPoolTaskExecutor uploadExecutor;
+
+    @Value("${aws.s3.bucket-name}")
+    private String bucketName;
+
+    @Value("${storage.upload.multipart-threshold-bytes:8388608}")
+    private long multipartThreshold;
+
+    @Value("${storage.upload.part-size-bytes:8388608}")
+    private long partSize;
+
+    /**
+     * @return the ETag of the stored object.
+     */
+    public String upload(String key, Path file, String contentType) throws IOException {
+        long size = file.toFile().length();
+        if (size < multipartThreshold) {
+            return putSingle(key, file, contentType);
+        }
+        return putMultipart(key, file, size, contentType);
+    }
+
+    private String putSingle(String key, Path file, String contentType) throws IOException {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .build();
+        try {
+            return s3Client.putObject(request, RequestBody.fromFile(file)).eTag();
+        } catch (S3Exception e) {
+            logger.error("S3 Error uploading file with key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
+            throw new IOException("Failed to upload file to R2/S3: " + e.getMessage(), e);
+        }
+    }
+
+    private String putMultipart(String key, Path file, long size, String contentType) throws IOException {
+        long effectivePartSize = Math.max(MIN_PART_SIZE, partSize);
+        String uploadId;
+        try {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .build()).uploadId();
+        } catch (S3Exception e) {
+            logger.error("S3 Error starting multipart upload for key {}: {}", key, e.awsErrorDetails().errorMessage(), e);
+            throw new IOException("Failed to upload file to R2/S3: " + e.getMessage(), e);
+        }
+
+        InFlightParts inFlight = new InFlightParts();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += effectivePartSize, partNumber++) {
+                long length = Math.min(effectivePartSize, size - offset);
+                ByteBuffer slice = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int number = partNumber;
+                parts.add(CompletableFuture.supplyAsync(() -> uploadPart(key, uploadId, number, slice, inFlight), uploadExecutor));
+            }
+
+            // Wake up on the first failed part instead of waiting for the parts before it
+            CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+            parts.forEach(part -> part.whenComplete((result, error) -> {
+                if (error != null) {
+                    firstFailure.completeExceptionally(error);
+                }
+            }));
+            CompletableFuture.anyOf(CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)), firstFailure).join();
+
+            List<CompletedPart> completed = new ArrayList<>(parts.size());
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completed.add(part.join());
+            }
+
+            String eTag = s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build()).eTag();
+            logger.info("Multipart upload of {} ({} bytes, {} parts) completed", key, size, completed.size());
+            return eTag;
+        } catch (CompletionException | S3Exception | IOException e) {
+            // Parts still uploading after the abort would be stored (and billed) again
+            inFlight.cancelAndAwait();
+            abort(key, uploadId);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            logger.error("Multipart upload of {} failed: {}", key, cause.getMessage(), cause);
+            throw new IOException("Failed to upload file to R2/S3: " + cause.getMessage(), cause);
+        }
+    }
+
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, ByteBuffer slice, InFlightParts inFlight) {
+        if (!inFlight.enter()) {
+            throw new CancellationException("Multipart upload " + uploadId + " was cancelled");
+        }
+        try {
+            return sendPart(key, uploadId, partNumber, slice);
+        } finally {
+            inFlight.exit();
+        }
+    }
+
+    private CompletedPart sendPart(String key, String uploadId, int partNumber, ByteBuffer slice) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) slice.remaining())
+                .build();
+        // The provider re-reads the mapped slice on SDK retries, without copying it onto the heap
+        RequestBody body = RequestBody.fromContentProvider(
+                () -> new ByteBufferInputStream(slice.duplicate()), slice.remaining(), "application/octet-stream");
+        UploadPartResponse response = s3Client.uploadPart(request, body);
+        return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+    }
+
+    private void abort(String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+            logger.warn("Aborted multipart upload {} for key {}", uploadId, key);
+        } catch (S3Exception e) {
+            logger.error("Could not abort multipart upload {} for key {}: {}", uploadId, key, e.getMessage());
+        }
+    }
+
+    /**
+     * Part uploads of one multipart upload. After the first failure, parts that have not started are
+     * skipped and running ones are interrupted (the SDK gives up on interrupt).
+     */
+    private static final class InFlightParts {
+        private final Set<Thread> running = new HashSet<>();
+        private boolean cancelled;
+
+        private synchronized boolean enter() {
+            if (cancelled) {
+                return false;
+            }
+            running.add(Thread.currentThread());
+            return true;
+        }
+
+        private synchronized void exit() {
+            running.remove(Thread.currentThread());
+            notifyAll();
+        }
+
+        /**
+         * Stops the remaining parts and waits until none is sending any more.
+         */
+        private synchronized void cancelAndAwait() {
+            cancelled = true;
+            running.forEach(Thread::interrupt);
+            try {
+                while (!running.isEmpty()) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
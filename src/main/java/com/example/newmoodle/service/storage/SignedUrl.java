@@ -0,0 +1,11 @@
+package com.example.newmoodle.service.storage;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A time-limited URL plus the headers the client has to send with it.
+ */
+public record SignedUrl(URI url, Instant expiresAt, Map<String, String> headers) {
+}
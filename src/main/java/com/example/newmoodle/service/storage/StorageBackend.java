@@ -0,0 +1,63 @@
+package com.example.newmoodle.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where file bytes live. {@link R2StorageBackend} talks to an S3-compatible bucket,
+ * {@link LocalDiskStorageBackend} keeps files on the local filesystem for on-prem deployments and
+ * load tests. Selected with {@code storage.backend} ({@code r2} or {@code local}).
+ */
+public interface StorageBackend {
+
+    /**
+     * Stores the file under {@code key}, replacing any existing object. The file is not consumed.
+     * @return the ETag of the stored object.
+     */
+    String put(String key, Path file, String contentType) throws IOException;
+
+    String put(String key, byte[] content, String contentType) throws IOException;
+
+    /**
+     * @return the object's metadata, or null if it does not exist.
+     */
+    StorageObject head(String key) throws IOException;
+
+    /**
+     * @return the whole object as a stream (close it after use), or null if it does not exist.
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Ranged and conditional read; the backend decides between 200, 206, 304 and 416.
+     * @return the download (close it after use), or null if the object does not exist.
+     */
+    ObjectDownload get(String key, String range, String ifNoneMatch, Instant ifModifiedSince) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * @return the keys that could not be deleted, with the error for each.
+     */
+    Map<String, String> deleteAll(List<String> keys);
+
+    /**
+     * Lists every object, one page of at most {@code pageSize} objects at a time.
+     */
+    Iterable<List<StorageObject>> list(int pageSize);
+
+    /**
+     * URL a browser can download the object from without going through the API.
+     */
+    SignedUrl downloadUrl(String key, String fileName, String contentType, Duration validity);
+
+    /**
+     * URL a browser can PUT exactly {@code contentLength} bytes of {@code contentType} to.
+     */
+    SignedUrl uploadUrl(String key, String contentType, long contentLength, Duration validity);
+}
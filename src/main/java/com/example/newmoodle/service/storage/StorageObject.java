@@ -0,0 +1,9 @@
+package com.example.newmoodle.service.storage;
+
+import java.time.Instant;
+
+/**
+ * Metadata of a stored object, as returned by HEAD and listing.
+ */
+public record StorageObject(String key, long size, String eTag, String contentType, Instant lastModified) {
+}
@@ -0,0 +1,100 @@
+package com.example.newmoodle.controller;
+
+import com.example.newmoodle.config.SecurityConfig;
+import com.example.newmoodle.dto.FeedbackDto;
+import com.example.newmoodle.model.Feedback;
+import com.example.newmoodle.model.Language;
+import com.example.newmoodle.model.User;
+import com.example.newmoodle.service.FeedbackBatchService;
+import com.example.newmoodle.service.FeedbackJobService;
+import com.example.newmoodle.service.FeedbackService;
+import com.example.newmoodle.service.JwtService;
+import com.example.newmoodle.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The feedback stream through the real security filter chain, including the async dispatch that
+ * completes the SSE response.
+ */
+@WebMvcTest(FeedbackController.class)
+@Import({SecurityConfig.class, FeedbackStreamer.class})
+class FeedbackControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    // SecurityConfig builds its authentication provider from userDetailsService() while the context starts
+    @MockitoBean(answers = Answers.RETURNS_MOCKS)
+    private UserService userService;
+    @MockitoBean
+    private JwtService jwtService;
+    @MockitoBean
+    private FeedbackService feedbackService;
+    @MockitoBean
+    private FeedbackJobService feedbackJobService;
+    @MockitoBean
+    private FeedbackBatchService feedbackBatchService;
+
+    private final User teacher = User.builder().id(1L).email("teacher@example.com").build();
+
+    @BeforeEach
+    void setUp() {
+        when(jwtService.extractUserName("token")).thenReturn("teacher@example.com");
+        when(jwtService.isTokenValid(eq("token"), any())).thenReturn(true);
+        when(userService.userDetailsService()).thenReturn(email -> teacher);
+        when(userService.getAuthenticatedUser()).thenReturn(teacher);
+    }
+
+    @Test
+    void streamRunsThroughToTheDoneEvent() throws Exception {
+        when(feedbackService.streamFeedback(eq(100L), eq(teacher), eq(Language.ENGLISH), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> onDelta = invocation.getArgument(3);
+            onDelta.accept("Good ");
+            onDelta.accept("work");
+            return Feedback.builder().id(5L).aiGenerated("Good work").build();
+        });
+        when(feedbackService.getFeedbackDto(5L)).thenReturn(FeedbackDto.builder().id(5L).aiGenerated("Good work").build());
+
+        MvcResult started = mockMvc.perform(post("/api/v1/feedback/100/stream")
+                        .param("language", "ENGLISH")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult(5000);
+
+        // The completion is an ASYNC dispatch, which the JWT filter does not authenticate again
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string(allOf(
+                        containsString("event:delta\ndata:Good \n"),
+                        containsString("event:done\n"),
+                        containsString("\"aiGenerated\":\"Good work\""))));
+    }
+
+    @Test
+    void streamRequiresAuthentication() throws Exception {
+        mockMvc.perform(post("/api/v1/feedback/100/stream").param("language", "ENGLISH"))
+                .andExpect(status().isForbidden());
+    }
+}
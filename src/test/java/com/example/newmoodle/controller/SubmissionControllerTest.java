@@ -0,0 +1,159 @@
+package com.example.newmoodle.controller;
+
+import com.example.newmoodle.dto.UploadUrlDto;
+import com.example.newmoodle.model.*;
+import com.example.newmoodle.repository.SubmissionRepository;
+import com.example.newmoodle.service.*;
+import com.example.newmoodle.service.storage.StorageObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Authorization of the direct upload endpoints, with the real {@link SubmissionService} behind the controller.
+ */
+@WebMvcTest(SubmissionController.class)
+@AutoConfigureMockMvc(addFilters = false)
+@Import(SubmissionService.class)
+class SubmissionControllerTest {
+
+    private static final String UPLOAD_URL_BODY = """
+            {"fileName": "essay.pdf", "contentType": "application/pdf", "size": 1024}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private UserService userService;
+    @MockitoBean
+    private JwtService jwtService;
+    @MockitoBean
+    private SectionService sectionService;
+    @MockitoBean
+    private AssignmentService assignmentService;
+    @MockitoBean
+    private FileService fileService;
+    @MockitoBean
+    private UploadIntentService uploadIntentService;
+    @MockitoBean
+    private SubmissionRepository submissionRepository;
+    @MockitoBean
+    private SubmissionExportService submissionExportService;
+    @MockitoBean
+    private FileStreamWriter fileStreamWriter;
+
+    private final User student = User.builder().id(1L).email("student@example.com").build();
+    private final User outsider = User.builder().id(2L).email("outsider@example.com").build();
+    private Assignment assignment;
+
+    @BeforeEach
+    void setUp() {
+        Section section = Section.builder().id(10L).students(new HashSet<>(Set.of(student))).build();
+        Section otherSection = Section.builder().id(11L).students(new HashSet<>(Set.of(student))).build();
+        assignment = Assignment.builder().id(100L).section(section).build();
+        when(sectionService.getSectionById(10L)).thenReturn(section);
+        when(sectionService.getSectionById(11L)).thenReturn(otherSection);
+        when(assignmentService.getAssignmentById(100L)).thenReturn(assignment);
+    }
+
+    @Test
+    void uploadUrlIsRefusedToUsersOutsideTheSection() throws Exception {
+        when(userService.getAuthenticatedUser()).thenReturn(outsider);
+
+        mockMvc.perform(post("/api/v1/submission/10/100/upload-url")
+                        .contentType(MediaType.APPLICATION_JSON).content(UPLOAD_URL_BODY))
+                .andExpect(status().isForbidden());
+
+        verify(uploadIntentService, never()).createIntent(any(), anyLong(), anyLong(), any());
+        verify(fileService, never()).presignUpload(anyString(), anyString(), anyLong(), any());
+    }
+
+    @Test
+    void uploadUrlIsRefusedForAnAssignmentOfAnotherSection() throws Exception {
+        when(userService.getAuthenticatedUser()).thenReturn(student);
+
+        mockMvc.perform(post("/api/v1/submission/11/100/upload-url")
+                        .contentType(MediaType.APPLICATION_JSON).content(UPLOAD_URL_BODY))
+                .andExpect(status().isBadRequest());
+
+        verify(uploadIntentService, never()).createIntent(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void uploadUrlIsIssuedToAStudentOfTheSection() throws Exception {
+        when(userService.getAuthenticatedUser()).thenReturn(student);
+        when(uploadIntentService.createIntent(eq(student), eq(10L), eq(100L), any()))
+                .thenReturn(UploadUrlDto.builder().key("essay-key").uploadUrl("https://bucket/essay-key").method("PUT").build());
+
+        mockMvc.perform(post("/api/v1/submission/10/100/upload-url")
+                        .contentType(MediaType.APPLICATION_JSON).content(UPLOAD_URL_BODY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.key").value("essay-key"));
+    }
+
+    @Test
+    void finalizeIsRefusedToUsersOutsideTheSection() throws Exception {
+        when(userService.getAuthenticatedUser()).thenReturn(outsider);
+
+        mockMvc.perform(post("/api/v1/submission/10/100/finalize").param("key", "essay-key"))
+                .andExpect(status().isForbidden());
+
+        verify(uploadIntentService, never()).getIntent(anyString(), any(), anyLong(), anyLong());
+        verify(submissionRepository, never()).save(any());
+    }
+
+    @Test
+    void finalizeIsRefusedForSomeoneElsesUpload() throws Exception {
+        when(userService.getAuthenticatedUser()).thenReturn(student);
+        when(uploadIntentService.getIntent("essay-key", student, 10L, 100L))
+                .thenThrow(new AccessDeniedException("Upload essay-key belongs to another user"));
+
+        mockMvc.perform(post("/api/v1/submission/10/100/finalize").param("key", "essay-key"))
+                .andExpect(status().isForbidden());
+
+        verify(submissionRepository, never()).save(any());
+    }
+
+    @Test
+    void finalizeRejectsAnUploadThatDoesNotMatchTheIntent() throws Exception {
+        when(userService.getAuthenticatedUser()).thenReturn(student);
+        UploadIntent intent = UploadIntent.builder()
+                .id(5L).objectKey("essay-key").userId(1L).sectionId(10L).assignmentId(100L)
+                .contentType("application/pdf").sizeBytes(1024)
+                .expiresAt(LocalDateTime.now().plusMinutes(30))
+                .build();
+        when(uploadIntentService.getIntent("essay-key", student, 10L, 100L)).thenReturn(intent);
+        when(fileService.headObject("essay-key"))
+                .thenReturn(new StorageObject("essay-key", 999_999, "\"etag\"", "application/pdf", Instant.now()));
+
+        mockMvc.perform(post("/api/v1/submission/10/100/finalize").param("key", "essay-key"))
+                .andExpect(status().isBadRequest());
+
+        verify(uploadIntentService).reject(intent);
+        verify(submissionRepository, never()).save(any());
+    }
+}
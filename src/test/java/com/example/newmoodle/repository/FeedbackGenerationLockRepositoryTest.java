@@ -0,0 +1,68 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.FeedbackGenerationLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedbackGenerationLockRepositoryTest extends PostgresRepositoryTest {
+
+    @Autowired
+    private FeedbackGenerationLockRepository generationLockRepository;
+
+    @BeforeEach
+    void cleanUp() {
+        generationLockRepository.deleteAll();
+    }
+
+    @Test
+    void tryAcquireTakesFreeAndExpiredLeasesOnly() {
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(generationLockRepository.tryAcquire(1L, "node-a/1", now.plusMinutes(5), now)).isEqualTo(1);
+        assertThat(generationLockRepository.tryAcquire(1L, "node-b/1", now.plusMinutes(5), now)).isZero();
+
+        // Node a died; once its lease ran out, node b takes over
+        LocalDateTime later = now.plusMinutes(6);
+        assertThat(generationLockRepository.tryAcquire(1L, "node-b/1", later.plusMinutes(5), later)).isEqualTo(1);
+        assertThat(owner(1L)).isEqualTo("node-b/1");
+    }
+
+    @Test
+    void renewExtendsOnlyTheGivenOwnersLeases() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        generationLockRepository.tryAcquire(1L, "node-a/1", now.plusMinutes(5), now);
+        generationLockRepository.tryAcquire(2L, "node-b/1", now.plusMinutes(5), now);
+
+        assertThat(generationLockRepository.renew(List.of("node-a/1", "node-a/gone"), now.plusMinutes(10))).isEqualTo(1);
+
+        assertThat(generationLockRepository.findById(1L)).get()
+                .extracting(FeedbackGenerationLock::getLockedUntil).isEqualTo(now.plusMinutes(10));
+        assertThat(generationLockRepository.findById(2L)).get()
+                .extracting(FeedbackGenerationLock::getLockedUntil).isEqualTo(now.plusMinutes(5));
+
+        // A renewed lease is not up for grabs when the original one would have expired
+        LocalDateTime later = now.plusMinutes(6);
+        assertThat(generationLockRepository.tryAcquire(1L, "node-b/2", later.plusMinutes(5), later)).isZero();
+    }
+
+    @Test
+    void releaseDeletesTheLeaseOnlyForItsOwner() {
+        LocalDateTime now = LocalDateTime.now();
+        generationLockRepository.tryAcquire(1L, "node-a/1", now.plusMinutes(5), now);
+
+        assertThat(generationLockRepository.release(1L, "node-b/1")).isZero();
+        assertThat(generationLockRepository.release(1L, "node-a/1")).isEqualTo(1);
+        assertThat(generationLockRepository.findById(1L)).isEmpty();
+    }
+
+    private String owner(Long submissionId) {
+        return generationLockRepository.findById(submissionId).map(FeedbackGenerationLock::getLockedBy).orElse(null);
+    }
+}
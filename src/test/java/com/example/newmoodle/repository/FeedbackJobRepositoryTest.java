@@ -0,0 +1,143 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.FeedbackJob;
+import com.example.newmoodle.model.FeedbackJobStatus;
+import com.example.newmoodle.model.Language;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedbackJobRepositoryTest extends PostgresRepositoryTest {
+
+    @Autowired
+    private FeedbackJobRepository feedbackJobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void cleanUp() {
+        feedbackJobRepository.deleteAll();
+    }
+
+    @Test
+    void lockNextRunnableSkipsRowsLockedByAnotherTransaction() {
+        FeedbackJob first = save(FeedbackJobStatus.QUEUED, null, null);
+        FeedbackJob second = save(FeedbackJobStatus.QUEUED, null, null);
+        TransactionTemplate outer = new TransactionTemplate(transactionManager);
+        TransactionTemplate inner = new TransactionTemplate(transactionManager);
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        outer.executeWithoutResult(status -> {
+            List<FeedbackJob> lockedByOuter = feedbackJobRepository.lockNextRunnable(LocalDateTime.now(), LocalDateTime.now().minusMinutes(10), 1);
+            assertThat(lockedByOuter).extracting(FeedbackJob::getId).containsExactly(first.getId());
+
+            List<FeedbackJob> lockedByInner = inner.execute(s ->
+                    feedbackJobRepository.lockNextRunnable(LocalDateTime.now(), LocalDateTime.now().minusMinutes(10), 10));
+            assertThat(lockedByInner).extracting(FeedbackJob::getId).containsExactly(second.getId());
+        });
+    }
+
+    @Test
+    void lockNextRunnableReclaimsOnlyStaleRunningJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        FeedbackJob stale = save(FeedbackJobStatus.RUNNING, "dead-node", now.minusMinutes(30));
+        save(FeedbackJobStatus.RUNNING, "live-node", now.minusMinutes(1));
+        save(FeedbackJobStatus.COMPLETED, null, null);
+
+        List<FeedbackJob> locked = new TransactionTemplate(transactionManager).execute(status ->
+                feedbackJobRepository.lockNextRunnable(now, now.minusMinutes(10), 10));
+
+        assertThat(locked).extracting(FeedbackJob::getId).containsExactly(stale.getId());
+    }
+
+    @Test
+    void lockNextRunnableLeavesQueuedJobsAloneUntilTheirNextAttempt() {
+        LocalDateTime now = LocalDateTime.now();
+        FeedbackJob due = save(FeedbackJobStatus.QUEUED, null, null);
+        due.setNextAttemptAt(now.minusSeconds(1));
+        feedbackJobRepository.save(due);
+        FeedbackJob backingOff = save(FeedbackJobStatus.QUEUED, null, null);
+        backingOff.setNextAttemptAt(now.plusMinutes(1)); // The provider asked for a minute
+        feedbackJobRepository.save(backingOff);
+        FeedbackJob fresh = save(FeedbackJobStatus.QUEUED, null, null);
+
+        List<FeedbackJob> locked = new TransactionTemplate(transactionManager).execute(status ->
+                feedbackJobRepository.lockNextRunnable(now, now.minusMinutes(10), 10));
+
+        assertThat(locked).extracting(FeedbackJob::getId).containsExactly(due.getId(), fresh.getId());
+    }
+
+    @Test
+    void failIfOwnedRecordsWhenARequeuedJobMayRunAgain() {
+        FeedbackJob job = save(FeedbackJobStatus.RUNNING, "node-a", LocalDateTime.now());
+        LocalDateTime nextAttemptAt = LocalDateTime.now().plusSeconds(30);
+
+        assertThat(feedbackJobRepository.failIfOwned(job.getId(), "node-a", 1, FeedbackJobStatus.QUEUED, "HTTP 429",
+                nextAttemptAt, LocalDateTime.now())).isEqualTo(1);
+
+        FeedbackJob requeued = reload(job);
+        assertThat(requeued.getStatus()).isEqualTo(FeedbackJobStatus.QUEUED);
+        assertThat(requeued.getNextAttemptAt()).isEqualToIgnoringNanos(nextAttemptAt);
+        assertThat(requeued.getLockedBy()).isNull();
+    }
+
+    @Test
+    void renewLocksOnlyTouchesJobsOfTheOwner() {
+        LocalDateTime old = LocalDateTime.now().minusMinutes(5);
+        FeedbackJob mine = save(FeedbackJobStatus.RUNNING, "node-a", old);
+        FeedbackJob theirs = save(FeedbackJobStatus.RUNNING, "node-b", old);
+
+        int renewed = feedbackJobRepository.renewLocks(List.of(mine.getId(), theirs.getId()), "node-a", LocalDateTime.now());
+
+        assertThat(renewed).isEqualTo(1);
+        assertThat(reload(mine).getLockedAt()).isAfter(old);
+        assertThat(reload(theirs).getLockedAt()).isEqualToIgnoringNanos(old);
+    }
+
+    @Test
+    void completeIfOwnedIgnoresARunWhoseJobWasReclaimed() {
+        FeedbackJob job = save(FeedbackJobStatus.RUNNING, "node-b", LocalDateTime.now());
+        job.setAttempts(2);
+        feedbackJobRepository.save(job);
+
+        // The original run (node-a, attempt 1) finishes after node-b reclaimed the job
+        assertThat(feedbackJobRepository.completeIfOwned(job.getId(), "node-a", 1, 42L, LocalDateTime.now())).isZero();
+        assertThat(feedbackJobRepository.failIfOwned(job.getId(), "node-a", 1, FeedbackJobStatus.FAILED, "late",
+                null, LocalDateTime.now())).isZero();
+        assertThat(reload(job).getStatus()).isEqualTo(FeedbackJobStatus.RUNNING);
+
+        assertThat(feedbackJobRepository.completeIfOwned(job.getId(), "node-b", 2, 42L, LocalDateTime.now())).isEqualTo(1);
+        FeedbackJob completed = reload(job);
+        assertThat(completed.getStatus()).isEqualTo(FeedbackJobStatus.COMPLETED);
+        assertThat(completed.getFeedbackId()).isEqualTo(42L);
+        assertThat(completed.getLockedBy()).isNull();
+    }
+
+    private FeedbackJob save(FeedbackJobStatus status, String lockedBy, LocalDateTime lockedAt) {
+        LocalDateTime now = LocalDateTime.now();
+        return feedbackJobRepository.save(FeedbackJob.builder()
+                .submissionId(1L)
+                .teacherId(1L)
+                .language(Language.ENGLISH)
+                .status(status)
+                .attempts(1)
+                .lockedBy(lockedBy)
+                .lockedAt(lockedAt)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+    }
+
+    private FeedbackJob reload(FeedbackJob job) {
+        return feedbackJobRepository.findById(job.getId()).orElseThrow();
+    }
+}
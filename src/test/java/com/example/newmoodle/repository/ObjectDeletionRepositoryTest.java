@@ -0,0 +1,68 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.ObjectDeletion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjectDeletionRepositoryTest extends PostgresRepositoryTest {
+
+    @Autowired
+    private ObjectDeletionRepository objectDeletionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void cleanUp() {
+        objectDeletionRepository.deleteAll();
+    }
+
+    @Test
+    void lockDueReturnsOnlyDueRowsOldestFirst() {
+        LocalDateTime now = LocalDateTime.now();
+        ObjectDeletion older = save("a", now.minusMinutes(5));
+        ObjectDeletion newer = save("b", now.minusMinutes(1));
+        save("c", now.plusMinutes(5)); // Claimed by another node, or backing off
+
+        List<ObjectDeletion> due = new TransactionTemplate(transactionManager).execute(status ->
+                objectDeletionRepository.lockDue(now, 10));
+
+        assertThat(due).extracting(ObjectDeletion::getId).containsExactly(older.getId(), newer.getId());
+    }
+
+    @Test
+    void lockDueSkipsRowsLockedByAnotherTransaction() {
+        LocalDateTime now = LocalDateTime.now();
+        ObjectDeletion first = save("a", now.minusMinutes(5));
+        ObjectDeletion second = save("b", now.minusMinutes(1));
+        TransactionTemplate outer = new TransactionTemplate(transactionManager);
+        TransactionTemplate inner = new TransactionTemplate(transactionManager);
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        outer.executeWithoutResult(status -> {
+            assertThat(objectDeletionRepository.lockDue(now, 1)).extracting(ObjectDeletion::getId)
+                    .containsExactly(first.getId());
+
+            List<ObjectDeletion> lockedByInner = inner.execute(s -> objectDeletionRepository.lockDue(now, 10));
+            assertThat(lockedByInner).extracting(ObjectDeletion::getId).containsExactly(second.getId());
+        });
+    }
+
+    private ObjectDeletion save(String key, LocalDateTime nextAttemptAt) {
+        return objectDeletionRepository.save(ObjectDeletion.builder()
+                .objectKey(key)
+                .attempts(0)
+                .nextAttemptAt(nextAttemptAt)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.newmoodle.repository;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Base for repository tests that exercise native Postgres queries (ON CONFLICT, SKIP LOCKED,
+ * RETURNING) against a real database. Tests are not wrapped in a transaction, so each repository
+ * call commits on its own exactly as in production; subclasses clean their tables up front.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+abstract class PostgresRepositoryTest {
+
+    // Started once for all repository test classes and stopped with the JVM
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    static {
+        postgres.start();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoredFileRepositoryTest extends PostgresRepositoryTest {
+
+    private static final String KEY = "sha256/" + "a".repeat(64);
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @BeforeEach
+    void cleanUp() {
+        storedFileRepository.deleteAll();
+    }
+
+    @Test
+    void registerIfAbsentKeepsTheFirstEntryOfADeduplicatedObject() {
+        assertThat(storedFileRepository.registerIfAbsent(KEY, 10, "application/pdf", "a".repeat(64))).isEqualTo(1);
+        // A second upload of the same bytes references the same object
+        assertThat(storedFileRepository.registerIfAbsent(KEY, 10, "application/pdf", "a".repeat(64))).isZero();
+
+        assertThat(storedFileRepository.findAll()).singleElement().satisfies(file -> {
+            assertThat(file.getObjectKey()).isEqualTo(KEY);
+            assertThat(file.getSizeBytes()).isEqualTo(10);
+            assertThat(file.getContentType()).isEqualTo("application/pdf");
+            assertThat(file.getPageCount()).isNull();
+        });
+    }
+
+    @Test
+    void directUploadsAreCatalogedWithoutAHash() {
+        storedFileRepository.registerIfAbsent("uuid_essay.docx", 10, "text/plain", null);
+
+        assertThat(storedFileRepository.findByObjectKey("uuid_essay.docx")).get()
+                .extracting(StoredFile::getSha256).isNull();
+    }
+
+    @Test
+    void updateTextStatsFillsInTheCountsOfOneObject() {
+        storedFileRepository.registerIfAbsent(KEY, 10, "application/pdf", "a".repeat(64));
+        storedFileRepository.registerIfAbsent("other", 10, "application/pdf", null);
+
+        assertThat(storedFileRepository.updateTextStats(KEY, 3, 1200)).isEqualTo(1);
+
+        assertThat(storedFileRepository.findByObjectKey(KEY)).get().satisfies(file -> {
+            assertThat(file.getPageCount()).isEqualTo(3);
+            assertThat(file.getWordCount()).isEqualTo(1200);
+        });
+        assertThat(storedFileRepository.findByObjectKey("other")).get().extracting(StoredFile::getWordCount).isNull();
+    }
+
+    @Test
+    void findByObjectKeyInAndDeleteByObjectKeysWorkOnTheGivenKeysOnly() {
+        storedFileRepository.registerIfAbsent("a", 1, "text/plain", null);
+        storedFileRepository.registerIfAbsent("b", 1, "text/plain", null);
+        storedFileRepository.registerIfAbsent("c", 1, "text/plain", null);
+
+        assertThat(storedFileRepository.findByObjectKeyIn(List.of("a", "c", "missing")))
+                .extracting(StoredFile::getObjectKey).containsExactlyInAnyOrder("a", "c");
+
+        assertThat(storedFileRepository.deleteByObjectKeys(List.of("a", "b"))).isEqualTo(2);
+        assertThat(storedFileRepository.findAll()).extracting(StoredFile::getObjectKey).containsExactly("c");
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.newmoodle.repository;
+
+import com.example.newmoodle.model.StoredObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoredObjectRepositoryTest extends PostgresRepositoryTest {
+
+    private static final String SHA = "a".repeat(64);
+    private static final String KEY = "sha256/" + SHA;
+
+    @Autowired
+    private StoredObjectRepository storedObjectRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void cleanUp() {
+        storedObjectRepository.deleteAll();
+    }
+
+    @Test
+    void addReferenceFindsOnlyStoredContentOfTheSameSize() {
+        assertThat(storedObjectRepository.addReference(SHA, 10)).isEmpty();
+        assertThat(storedObjectRepository.register(SHA, KEY, 10)).contains(KEY);
+
+        assertThat(storedObjectRepository.addReference(SHA, 11)).isEmpty();
+        assertThat(storedObjectRepository.addReference(SHA, 10)).contains(KEY);
+        assertThat(refCount()).isEqualTo(2);
+    }
+
+    @Test
+    void registerOfAlreadyRegisteredContentAddsAReferenceToTheExistingRow() {
+        assertThat(storedObjectRepository.register(SHA, "legacy-uuid_essay.pdf", 10)).contains("legacy-uuid_essay.pdf");
+
+        assertThat(storedObjectRepository.register(SHA, KEY, 10)).contains("legacy-uuid_essay.pdf");
+        assertThat(refCount()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentRegistrationsOfTheSameContentAllGetAReference() throws Exception {
+        int uploads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Optional<String>>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(uploads)) {
+            for (int i = 0; i < uploads; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    // Every upload missed addReference and stored its copy under the same content key
+                    return storedObjectRepository.register(SHA, KEY, 10);
+                }, executor));
+            }
+            start.countDown();
+        }
+
+        assertThat(results).allSatisfy(result -> assertThat(result.join()).contains(KEY));
+        assertThat(storedObjectRepository.findAll()).hasSize(1);
+        assertThat(refCount()).isEqualTo(uploads);
+    }
+
+    @Test
+    void releaseReferenceReturnsTheRemainingCountAndKeepsTheRow() {
+        storedObjectRepository.register(SHA, KEY, 10);
+        storedObjectRepository.addReference(SHA, 10);
+
+        assertThat(storedObjectRepository.releaseReference(KEY)).contains(1);
+        assertThat(storedObjectRepository.releaseReference(KEY)).contains(0);
+        // Gone references are not counted below zero, and unknown keys are not reference-counted
+        assertThat(storedObjectRepository.releaseReference(KEY)).isEmpty();
+        assertThat(storedObjectRepository.releaseReference("uuid_direct-upload.pdf")).isEmpty();
+
+        // Until the queued bucket delete runs, a new upload of the same bytes takes the object back
+        assertThat(storedObjectRepository.addReference(SHA, 10)).contains(KEY);
+        assertThat(storedObjectRepository.findLiveKeys(List.of(KEY))).containsExactly(KEY);
+    }
+
+    @Test
+    void objectsBeingDeletedCannotBeReferencedAgain() {
+        storedObjectRepository.register(SHA, KEY, 10);
+        storedObjectRepository.releaseReference(KEY);
+
+        assertThat(storedObjectRepository.markDeleting(List.of(KEY))).containsExactly(KEY);
+        assertThat(storedObjectRepository.isBeingDeleted(SHA)).isTrue();
+        assertThat(storedObjectRepository.addReference(SHA, 10)).isEmpty();
+        assertThat(storedObjectRepository.register(SHA, KEY, 10)).isEmpty();
+
+        // A failed bucket delete hands the object back
+        assertThat(storedObjectRepository.unmarkDeleting(List.of(KEY))).isEqualTo(1);
+        assertThat(storedObjectRepository.addReference(SHA, 10)).contains(KEY);
+    }
+
+    @Test
+    void markDeletingSkipsObjectsThatAreReferencedAgain() {
+        storedObjectRepository.register(SHA, KEY, 10);
+        storedObjectRepository.releaseReference(KEY);
+        storedObjectRepository.addReference(SHA, 10);
+
+        assertThat(storedObjectRepository.markDeleting(List.of(KEY))).isEmpty();
+        assertThat(storedObjectRepository.deleteMarked(List.of(KEY))).isZero();
+        assertThat(refCount()).isEqualTo(1);
+    }
+
+    @Test
+    void markDeletingWaitsForAnUploadThatIsTakingTheObjectBack() throws Exception {
+        storedObjectRepository.register(SHA, KEY, 10);
+        storedObjectRepository.releaseReference(KEY);
+        TransactionTemplate upload = new TransactionTemplate(transactionManager);
+        TransactionTemplate worker = new TransactionTemplate(transactionManager);
+        worker.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        CountDownLatch referenced = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Optional<String>> uploaded = CompletableFuture.supplyAsync(() -> upload.execute(status -> {
+            Optional<String> key = storedObjectRepository.addReference(SHA, 10);
+            referenced.countDown();
+            try {
+                commit.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return key;
+        }));
+        assertThat(referenced.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The worker's mark blocks on the uploader's row lock and then sees the new reference
+        CompletableFuture<List<String>> marked = CompletableFuture.supplyAsync(() ->
+                worker.execute(status -> storedObjectRepository.markDeleting(List.of(KEY))));
+        Thread.sleep(200);
+        assertThat(marked).isNotDone();
+        commit.countDown();
+
+        assertThat(uploaded.get(5, TimeUnit.SECONDS)).contains(KEY);
+        assertThat(marked.get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(refCount()).isEqualTo(1);
+    }
+
+    @Test
+    void deleteMarkedRemovesOnlyMarkedRows() {
+        String otherSha = "b".repeat(64);
+        storedObjectRepository.register(SHA, KEY, 10);
+        storedObjectRepository.register(otherSha, "sha256/" + otherSha, 10);
+        storedObjectRepository.releaseReference(KEY);
+        storedObjectRepository.markDeleting(List.of(KEY, "sha256/" + otherSha));
+
+        assertThat(storedObjectRepository.deleteMarked(List.of(KEY, "sha256/" + otherSha))).isEqualTo(1);
+        assertThat(storedObjectRepository.findReferencedKeys(List.of(KEY, "sha256/" + otherSha)))
+                .containsExactly("sha256/" + otherSha);
+    }
+
+    private int refCount() {
+        return storedObjectRepository.findAll().stream()
+                .filter(o -> o.getSha256().equals(SHA))
+                .mapToInt(StoredObject::getRefCount)
+                .sum();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.newmoodle.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void acquireWaitsForAFreeSlotAndTimesOut() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 10, 2.0, 0.5);
+        assertThat(limit.acquire(0)).isTrue();
+
+        assertThat(limit.acquire(50)).isFalse();
+
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limit.acquire(5000);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertThat(waiting).isNotDone();
+        limit.onIgnore();
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(limit.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void limitInUseGrowsAdditively() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0, 0.5);
+
+        for (int round = 0; round < 5; round++) {
+            int slots = limit.getLimit();
+            for (int i = 0; i < slots; i++) {
+                assertThat(limit.acquire(0)).isTrue();
+            }
+            for (int i = 0; i < slots; i++) {
+                limit.onSuccess(RTT);
+            }
+        }
+
+        assertThat(limit.getLimit()).isGreaterThanOrEqualTo(4);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void limitTheTrafficDoesNotUseStaysPut() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 20, 2.0, 0.5);
+
+        for (int i = 0; i < 50; i++) {
+            limit.acquire(0);
+            limit.onSuccess(RTT);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void droppedCallsHalveTheLimitDownToTheMinimum() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 2, 10, 2.0, 0.5);
+
+        limit.acquire(0);
+        limit.onDropped();
+        assertThat(limit.getLimit()).isEqualTo(4);
+
+        for (int i = 0; i < 5; i++) {
+            limit.acquire(0);
+            limit.onDropped();
+        }
+        assertThat(limit.getLimit()).isEqualTo(2);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void risingLatencyShrinksTheLimitBeforeTheProviderRefuses() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 10, 2.0, 0.9);
+        limit.acquire(0);
+        limit.onSuccess(RTT); // Learns the minimum latency
+
+        limit.acquire(0);
+        limit.onSuccess(RTT * 3); // 3x the minimum, above the 2x tolerance
+
+        assertThat(limit.getLimit()).isEqualTo(9);
+
+        limit.acquire(0);
+        limit.onSuccess(RTT * 2); // Exactly at the tolerance is fine
+        assertThat(limit.getLimit()).isEqualTo(9);
+    }
+
+    @Test
+    void initialLimitIsClampedToTheBounds() {
+        assertThat(new AdaptiveConcurrencyLimit(50, 1, 10, 2.0, 0.5).getLimit()).isEqualTo(10);
+        assertThat(new AdaptiveConcurrencyLimit(0, 2, 10, 2.0, 0.5).getLimit()).isEqualTo(2);
+    }
+}
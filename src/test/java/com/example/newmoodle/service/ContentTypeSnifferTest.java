@@ -0,0 +1,75 @@
+package com.example.newmoodle.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentTypeSnifferTest {
+
+    @Test
+    void recognizesFormatsByTheirMagicBytes() {
+        assertThat(sniff("%PDF-1.7\n%âãÏÓ".getBytes(StandardCharsets.ISO_8859_1))).isEqualTo("application/pdf");
+        assertThat(sniff(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0})).isEqualTo("image/png");
+        assertThat(sniff(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0})).isEqualTo("image/jpeg");
+        assertThat(sniff("GIF89a".getBytes(StandardCharsets.US_ASCII))).isEqualTo("image/gif");
+        assertThat(sniff("RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.US_ASCII))).isEqualTo("image/webp");
+        assertThat(sniff("RIFF\0\0\0\0WAVEfmt ".getBytes(StandardCharsets.US_ASCII))).isEqualTo(ContentTypeSniffer.OCTET_STREAM);
+    }
+
+    @Test
+    void ignoresTheExtensionTheClientChose() {
+        // A PDF renamed to .png is still a PDF; an executable renamed to .pdf is not
+        assertThat(sniff("%PDF-1.4".getBytes(StandardCharsets.US_ASCII))).isEqualTo("application/pdf");
+        assertThat(sniff(new byte[]{'M', 'Z', (byte) 0x90, 0, 3, 0})).isEqualTo(ContentTypeSniffer.OCTET_STREAM);
+    }
+
+    @Test
+    void tellsDocxFromOtherZipArchives() throws IOException {
+        assertThat(sniff(zip("[Content_Types].xml", "word/document.xml"))).isEqualTo(ContentTypeSniffer.DOCX);
+        assertThat(sniff(zip("notes.txt", "photo.jpg"))).isEqualTo("application/zip");
+    }
+
+    @Test
+    void plainTextMustBeValidUtf8WithoutNulBytes() {
+        assertThat(sniff("Эссе о Казахстане\n".getBytes(StandardCharsets.UTF_8))).isEqualTo("text/plain");
+        assertThat(sniff("\uFEFFwith a byte order mark".getBytes(StandardCharsets.UTF_8))).isEqualTo("text/plain");
+        assertThat(sniff(new byte[]{'a', 'b', 0, 'c'})).isEqualTo(ContentTypeSniffer.OCTET_STREAM);
+        assertThat(sniff(new byte[]{'a', (byte) 0xC3, (byte) 0x28, 'b', 'c', 'd', 'e'})).isEqualTo(ContentTypeSniffer.OCTET_STREAM);
+    }
+
+    @Test
+    void multiByteCharacterCutByTheEndOfTheBlockIsStillText() {
+        byte[] text = "ааааа".getBytes(StandardCharsets.UTF_8); // 2 bytes per letter
+        assertThat(ContentTypeSniffer.sniff(text, text.length - 1)).isEqualTo("text/plain");
+    }
+
+    @Test
+    void emptyAndShortFilesAreNotMistakenForAFormat() {
+        assertThat(sniff(new byte[0])).isEqualTo(ContentTypeSniffer.OCTET_STREAM);
+        assertThat(sniff("%PD".getBytes(StandardCharsets.US_ASCII))).isEqualTo("text/plain");
+        // Bytes past the given length are not looked at
+        assertThat(ContentTypeSniffer.sniff("%PDF-1.7".getBytes(StandardCharsets.US_ASCII), 3)).isEqualTo("text/plain");
+    }
+
+    private static String sniff(byte[] head) {
+        return ContentTypeSniffer.sniff(head, head.length);
+    }
+
+    private static byte[] zip(String... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (String entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry));
+                zip.write("<x/>".getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.newmoodle.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocxTextExtractorTest {
+
+    // Body (paragraph, tab, line break, 2x2 table, field code), then footnotes and header in part-name order
+    private static final String SAMPLE_TEXT = """
+            Assignment 7
+            Name:\tAnswer
+            Second line
+            A1 \tB1a B1b \t
+            A2 \tB2 \t
+            Done
+
+            A footnote
+
+            Course header
+
+            """;
+
+    private final DocxTextExtractor extractor = new DocxTextExtractor(Integer.MAX_VALUE);
+
+    @Test
+    void streamingPassExtractsBodyTablesAndSecondaryParts() throws Exception {
+        assertThat(extractor.extractWithStax(sample())).isEqualTo(SAMPLE_TEXT);
+    }
+
+    @Test
+    void docx4jFallbackProducesTheSameText() throws Exception {
+        try (InputStream in = Files.newInputStream(sample())) {
+            assertThat(extractor.extractWithDocx4j(in)).isEqualTo(SAMPLE_TEXT);
+        }
+    }
+
+    @Test
+    void bothPassesTruncateAtMaxChars() throws Exception {
+        DocxTextExtractor limited = new DocxTextExtractor(10);
+        String expected = "Assignment\n[... text truncated after 10 characters ...]";
+
+        assertThat(limited.extractWithStax(sample())).isEqualTo(expected);
+        try (InputStream in = Files.newInputStream(sample())) {
+            assertThat(limited.extractWithDocx4j(in)).isEqualTo(expected);
+        }
+    }
+
+    private Path sample() throws Exception {
+        return Path.of(getClass().getResource("/docx/sample.docx").toURI());
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.model.ExtractedText;
+import com.example.newmoodle.repository.ExtractedTextRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ExtractedTextCacheTest {
+
+    private final ExtractedTextRepository extractedTextRepository = mock(ExtractedTextRepository.class);
+    private final AtomicInteger extractions = new AtomicInteger();
+
+    private ExtractedTextCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ExtractedTextCache(extractedTextRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxChars", 10L);
+        ReflectionTestUtils.setField(cache, "persist", true);
+        cache.registerMetrics();
+        when(extractedTextRepository.findByObjectKeyAndEtag(anyString(), anyString())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void missExtractsOnceAndPersistsTheText() throws Exception {
+        assertThat(cache.get("essay.pdf", "v1", extractor("text"))).isEqualTo("text");
+        assertThat(cache.get("essay.pdf", "v1", extractor("text"))).isEqualTo("text");
+
+        assertThat(extractions).hasValue(1);
+        verify(extractedTextRepository, times(1)).findByObjectKeyAndEtag("essay.pdf", "v1");
+        verify(extractedTextRepository).save(argThat(stored -> stored.getObjectKey().equals("essay.pdf")
+                && stored.getEtag().equals("v1") && stored.getCharCount() == 4));
+    }
+
+    @Test
+    void anotherETagIsExtractedAgain() throws Exception {
+        cache.get("essay.pdf", "v1", extractor("old"));
+
+        assertThat(cache.get("essay.pdf", "v2", extractor("new"))).isEqualTo("new");
+        assertThat(extractions).hasValue(2);
+    }
+
+    @Test
+    void databaseHitsSkipTheExtractor() throws Exception {
+        when(extractedTextRepository.findByObjectKeyAndEtag("essay.pdf", "v1"))
+                .thenReturn(Optional.of(ExtractedText.builder().content("stored").build()));
+
+        assertThat(cache.get("essay.pdf", "v1", extractor("text"))).isEqualTo("stored");
+        assertThat(extractions).hasValue(0);
+        verify(extractedTextRepository, never()).save(any());
+    }
+
+    @Test
+    void leastRecentlyUsedTextIsEvictedOverTheCharacterBudget() throws Exception {
+        cache.get("a", "v1", extractor("aaaa"));
+        cache.get("b", "v1", extractor("bbbb"));
+        cache.get("a", "v1", extractor("aaaa")); // a is now more recent than b
+
+        cache.get("c", "v1", extractor("cccc"));
+
+        assertThat(cache.getMemoryChars()).isEqualTo(8);
+        assertThat(extractions).hasValue(3);
+        cache.get("a", "v1", extractor("aaaa"));
+        cache.get("c", "v1", extractor("cccc"));
+        assertThat(extractions).hasValue(3);
+        cache.get("b", "v1", extractor("bbbb"));
+        assertThat(extractions).hasValue(4);
+    }
+
+    @Test
+    void textLargerThanTheBudgetIsOnlyPersisted() throws Exception {
+        cache.get("a", "v1", extractor("aaaa"));
+
+        assertThat(cache.get("big", "v1", extractor("x".repeat(11)))).hasSize(11);
+
+        assertThat(cache.getMemoryChars()).as("Did not evict the smaller entries").isEqualTo(4);
+        verify(extractedTextRepository).save(argThat(stored -> stored.getObjectKey().equals("big")));
+    }
+
+    @Test
+    void failedExtractionsAreRethrownAndNotCached() throws Exception {
+        Callable<String> failing = () -> {
+            extractions.incrementAndGet();
+            throw new IOException("corrupt");
+        };
+
+        assertThatThrownBy(() -> cache.get("essay.pdf", "v1", failing)).isInstanceOf(IOException.class).hasMessage("corrupt");
+        assertThat(cache.get("essay.pdf", "v1", extractor("text"))).isEqualTo("text");
+        assertThat(extractions).hasValue(2);
+    }
+
+    @Test
+    void failingToPersistStillReturnsTheText() throws Exception {
+        when(extractedTextRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertThat(cache.get("essay.pdf", "v1", extractor("text"))).isEqualTo("text");
+        assertThat(cache.get("essay.pdf", "v1", extractor("text"))).isEqualTo("text");
+        assertThat(extractions).hasValue(1);
+    }
+
+    @Test
+    void evictDropsEveryVersionOfTheObjectsFromBothTiers() throws Exception {
+        cache.get("a", "v1", extractor("aa"));
+        cache.get("a", "v2", extractor("aa"));
+        cache.get("b", "v1", extractor("bbbb"));
+
+        cache.evict(List.of("a"));
+
+        assertThat(cache.getMemoryChars()).isEqualTo(4);
+        verify(extractedTextRepository).deleteByObjectKeys(List.of("a"));
+        cache.get("a", "v1", extractor("aa"));
+        cache.get("b", "v1", extractor("bbbb"));
+        assertThat(extractions).hasValue(4);
+    }
+
+    @Test
+    void concurrentMissesShareOneExtraction() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> slow = () -> {
+            extractions.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "text";
+        };
+
+        List<CompletableFuture<String>> reads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int i = 0; i < 4; i++) {
+                reads.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return cache.get("essay.pdf", "v1", slow);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }, executor));
+            }
+            Thread.sleep(200);
+            release.countDown();
+        }
+
+        assertThat(reads).allSatisfy(read -> assertThat(read.join()).isEqualTo("text"));
+        assertThat(extractions).hasValue(1);
+    }
+
+    private Callable<String> extractor(String text) {
+        return () -> {
+            extractions.incrementAndGet();
+            return text;
+        };
+    }
+}
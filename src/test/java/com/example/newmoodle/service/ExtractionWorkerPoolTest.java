@@ -0,0 +1,50 @@
+package com.example.newmoodle.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs real child JVMs on the test classpath.
+ */
+class ExtractionWorkerPoolTest {
+
+    private final ExtractionWorkerPool pool = new ExtractionWorkerPool();
+
+    @BeforeEach
+    void startPool() {
+        ReflectionTestUtils.setField(pool, "enabled", true);
+        ReflectionTestUtils.setField(pool, "workerCount", 1);
+        ReflectionTestUtils.setField(pool, "workerHeap", "128m");
+        ReflectionTestUtils.setField(pool, "timeoutSeconds", 60L);
+        ReflectionTestUtils.setField(pool, "maxDocumentsPerWorker", 10);
+        ReflectionTestUtils.setField(pool, "queueCapacity", 1);
+        ReflectionTestUtils.setField(pool, "pdfMaxPages", 150);
+        ReflectionTestUtils.setField(pool, "pdfPagesPerTask", 16);
+        ReflectionTestUtils.setField(pool, "pdfMaxChars", 400_000);
+        ReflectionTestUtils.setField(pool, "docxMaxChars", 10);
+        pool.init();
+    }
+
+    @AfterEach
+    void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void workerAppliesTheDocxLimitToDocxFiles() throws Exception {
+        ExtractedDocument document = pool.extract(sample(), "docx");
+
+        assertThat(document.text()).isEqualTo("Assignment\n[... text truncated after 10 characters ...]");
+        assertThat(document.pageCount()).isNull();
+    }
+
+    private Path sample() throws Exception {
+        return Path.of(getClass().getResource("/docx/sample.docx").toURI());
+    }
+}
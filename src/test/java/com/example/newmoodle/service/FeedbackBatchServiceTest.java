@@ -0,0 +1,103 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.dto.FeedbackBatchDto;
+import com.example.newmoodle.model.*;
+import com.example.newmoodle.repository.FeedbackBatchRepository;
+import com.example.newmoodle.repository.FeedbackJobRepository;
+import com.example.newmoodle.repository.SubmissionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeedbackBatchServiceTest {
+
+    @Mock
+    private SubmissionRepository submissionRepository;
+    @Mock
+    private AssignmentService assignmentService;
+    @Mock
+    private FeedbackJobService feedbackJobService;
+    @Mock
+    private FeedbackJobRepository feedbackJobRepository;
+    @Mock
+    private FeedbackBatchRepository feedbackBatchRepository;
+    @InjectMocks
+    private FeedbackBatchService feedbackBatchService;
+
+    private final User teacher = User.builder().id(1L).build();
+
+    @Test
+    void startBatchQueuesEachPendingSubmissionAsAJob() {
+        when(assignmentService.getAssignmentById(10L)).thenReturn(Assignment.builder().id(10L).teacher(teacher).build());
+        when(submissionRepository.findByAssignmentIdAndStatus(10L, SubmissionStatus.PENDING))
+                .thenReturn(List.of(submission(100L), submission(101L)));
+        FeedbackJob first = job(1000L, 100L, FeedbackJobStatus.QUEUED);
+        FeedbackJob second = job(1001L, 101L, FeedbackJobStatus.RUNNING);
+        when(feedbackJobService.enqueue(100L, teacher, Language.ENGLISH)).thenReturn(first);
+        when(feedbackJobService.enqueue(101L, teacher, Language.ENGLISH)).thenReturn(second);
+        when(feedbackBatchRepository.save(any(FeedbackBatch.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(feedbackJobRepository.findAllById(List.of(1000L, 1001L))).thenReturn(List.of(first, second));
+
+        FeedbackBatchDto batch = feedbackBatchService.startBatch(10L, teacher, Language.ENGLISH);
+
+        assertThat(batch.getTotal()).isEqualTo(2);
+        assertThat(batch.getInProgress()).isEqualTo(1);
+        assertThat(batch.isFinished()).isFalse();
+        verify(feedbackBatchRepository).save(argThat(saved -> saved.getJobIds().equals(List.of(1000L, 1001L))));
+    }
+
+    @Test
+    void startBatchRejectsOtherTeachers() {
+        User owner = User.builder().id(2L).build();
+        when(assignmentService.getAssignmentById(10L)).thenReturn(Assignment.builder().id(10L).teacher(owner).build());
+
+        assertThatThrownBy(() -> feedbackBatchService.startBatch(10L, teacher, Language.ENGLISH))
+                .isInstanceOf(AccessDeniedException.class);
+        verifyNoInteractions(feedbackJobService);
+    }
+
+    @Test
+    void getBatchIsFinishedOnceEveryJobCompletedOrFailed() {
+        LocalDateTime startedAt = LocalDateTime.now().minusMinutes(5);
+        when(feedbackBatchRepository.findById("b")).thenReturn(Optional.of(FeedbackBatch.builder()
+                .id("b").assignmentId(10L).teacherId(1L).language(Language.ENGLISH)
+                .jobIds(List.of(1000L, 1001L)).startedAt(startedAt).build()));
+        FeedbackJob failed = job(1001L, 101L, FeedbackJobStatus.FAILED);
+        failed.setLastError("Unsupported file");
+        when(feedbackJobRepository.findAllById(List.of(1000L, 1001L)))
+                .thenReturn(List.of(job(1000L, 100L, FeedbackJobStatus.COMPLETED), failed));
+
+        FeedbackBatchDto batch = feedbackBatchService.getBatch("b");
+
+        assertThat(batch.isFinished()).isTrue();
+        assertThat(batch.getSucceeded()).isEqualTo(1);
+        assertThat(batch.getFailures()).containsEntry(101L, "Unsupported file");
+        assertThat(batch.getFinishedAt()).isNotNull();
+    }
+
+    private static Submission submission(Long id) {
+        return Submission.builder().id(id).build();
+    }
+
+    private static FeedbackJob job(Long id, Long submissionId, FeedbackJobStatus status) {
+        return FeedbackJob.builder()
+                .id(id)
+                .submissionId(submissionId)
+                .status(status)
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.model.FeedbackJob;
+import com.example.newmoodle.model.FeedbackJobStatus;
+import com.example.newmoodle.model.Language;
+import com.example.newmoodle.model.User;
+import com.example.newmoodle.repository.FeedbackJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class FeedbackJobServiceTest {
+
+    private final FeedbackJobRepository feedbackJobRepository = mock(FeedbackJobRepository.class);
+    private FeedbackJobService feedbackJobService;
+    private FeedbackJob claimed;
+
+    @BeforeEach
+    void setUp() {
+        feedbackJobService = new FeedbackJobService(feedbackJobRepository, mock(SubmissionService.class), mock(FeedbackService.class));
+        ReflectionTestUtils.setField(feedbackJobService, "maxAttempts", 3);
+        claimed = FeedbackJob.builder().id(1L).status(FeedbackJobStatus.RUNNING).attempts(1).lockedBy("node-a").build();
+        when(feedbackJobRepository.failIfOwned(anyLong(), anyString(), anyInt(), any(), any(), any(), any())).thenReturn(1);
+    }
+
+    @Test
+    void retryAfterDefersTheRequeuedJob() {
+        feedbackJobService.markFailed(claimed, "HTTP 429", true, Duration.ofSeconds(90));
+
+        verify(feedbackJobRepository).failIfOwned(eq(1L), eq("node-a"), eq(1), eq(FeedbackJobStatus.QUEUED), eq("HTTP 429"),
+                argThat((LocalDateTime next) -> next.isAfter(LocalDateTime.now().plusSeconds(80))), any());
+    }
+
+    @Test
+    void retryWithoutRetryAfterIsRunnableRightAway() {
+        feedbackJobService.markFailed(claimed, "timeout", true);
+
+        verify(feedbackJobRepository).failIfOwned(eq(1L), eq("node-a"), eq(1), eq(FeedbackJobStatus.QUEUED), eq("timeout"),
+                isNull(), any());
+    }
+
+    @Test
+    void nonRetryableAndExhaustedJobsFail() {
+        feedbackJobService.markFailed(claimed, "HTTP 400", false, Duration.ofSeconds(90));
+        verify(feedbackJobRepository).failIfOwned(eq(1L), eq("node-a"), eq(1), eq(FeedbackJobStatus.FAILED), eq("HTTP 400"),
+                isNull(), any());
+
+        claimed.setAttempts(3);
+        feedbackJobService.markFailed(claimed, "HTTP 503", true, Duration.ofSeconds(90));
+        verify(feedbackJobRepository).failIfOwned(eq(1L), eq("node-a"), eq(3), eq(FeedbackJobStatus.FAILED), eq("HTTP 503"),
+                isNull(), any());
+    }
+
+    @Test
+    void activeJobIsReusedOnlyForTheSameLanguage() {
+        FeedbackJob english = FeedbackJob.builder().id(7L).submissionId(1L).language(Language.ENGLISH)
+                .status(FeedbackJobStatus.RUNNING).build();
+        when(feedbackJobRepository.findFirstBySubmissionIdAndLanguageAndStatusInOrderByCreatedAtDesc(eq(1L), eq(Language.ENGLISH), any()))
+                .thenReturn(Optional.of(english));
+        when(feedbackJobRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        User teacher = User.builder().id(5L).build();
+
+        assertThat(feedbackJobService.enqueue(1L, teacher, Language.ENGLISH)).isSameAs(english);
+
+        FeedbackJob russian = feedbackJobService.enqueue(1L, teacher, Language.RUSSIAN);
+        assertThat(russian).isNotSameAs(english);
+        assertThat(russian.getLanguage()).isEqualTo(Language.RUSSIAN);
+        assertThat(russian.getStatus()).isEqualTo(FeedbackJobStatus.QUEUED);
+    }
+}
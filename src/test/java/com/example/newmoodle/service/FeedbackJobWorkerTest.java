@@ -0,0 +1,71 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.model.FeedbackJob;
+import com.example.newmoodle.model.FeedbackJobStatus;
+import com.example.newmoodle.model.Language;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class FeedbackJobWorkerTest {
+
+    private final FeedbackJobService feedbackJobService = mock(FeedbackJobService.class);
+    private final FeedbackService feedbackService = mock(FeedbackService.class);
+    private final ThreadPoolTaskExecutor feedbackJobExecutor = mock(ThreadPoolTaskExecutor.class);
+
+    private FeedbackJobWorker worker;
+    private FeedbackJob job;
+
+    @BeforeEach
+    void setUp() {
+        worker = new FeedbackJobWorker(feedbackJobService, feedbackService, mock(UserService.class), feedbackJobExecutor);
+        ReflectionTestUtils.setField(worker, "workerThreads", 1);
+        job = FeedbackJob.builder().id(1L).submissionId(2L).teacherId(3L).language(Language.ENGLISH)
+                .status(FeedbackJobStatus.RUNNING).attempts(1).build();
+        when(feedbackJobService.claim(anyInt())).thenReturn(List.of(job));
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(feedbackJobExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void interruptedJobsAreRetried() throws Exception {
+        when(feedbackService.generateFeedback(anyLong(), any(), any()))
+                .thenThrow(new CancellationException("Interrupted while backing off an LLM retry"));
+
+        worker.poll();
+
+        verify(feedbackJobService).markFailed(job, "Interrupted while backing off an LLM retry", true);
+    }
+
+    @Test
+    void interruptedLlmCallsAreRetried() throws Exception {
+        when(feedbackService.generateFeedback(anyLong(), any(), any())).thenThrow(new LlmClientException(
+                "Interrupted while calling local LLM stub", LlmClientException.NO_RESPONSE, null, new InterruptedException()));
+
+        worker.poll();
+
+        verify(feedbackJobService).markFailed(eq(job), any(), eq(true), isNull());
+    }
+
+    @Test
+    void badInputFailsTheJobForGood() throws Exception {
+        when(feedbackService.generateFeedback(anyLong(), any(), any())).thenThrow(new IllegalStateException("No file attached"));
+
+        worker.poll();
+
+        verify(feedbackJobService).markFailed(job, "No file attached", false);
+    }
+}
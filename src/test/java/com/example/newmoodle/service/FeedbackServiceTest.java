@@ -0,0 +1,109 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.mapper.FeedbackMapper;
+import com.example.newmoodle.model.*;
+import com.example.newmoodle.repository.FeedbackGenerationLockRepository;
+import com.example.newmoodle.repository.FeedbackRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class FeedbackServiceTest {
+
+    private final SubmissionService submissionService = mock(SubmissionService.class);
+    private final FeedbackRepository feedbackRepository = mock(FeedbackRepository.class);
+    private final FileService fileService = mock(FileService.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final LlmClient llmClient = mock(LlmClient.class);
+    private final FeedbackGenerationLockRepository generationLockRepository = mock(FeedbackGenerationLockRepository.class);
+
+    private FeedbackService feedbackService;
+    private final User teacher = User.builder().id(1L).build();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        feedbackService = new FeedbackService(submissionService, feedbackRepository, fileService,
+                mock(FeedbackMapper.class), transactionTemplate, llmClient, mock(AssignmentContextCache.class),
+                mock(ImagePreprocessor.class), generationLockRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(feedbackService, "leaseSeconds", 300L);
+        ReflectionTestUtils.setField(feedbackService, "lockPollMs", 10L);
+        ReflectionTestUtils.setField(feedbackService, "maxWaitSeconds", 600L);
+        feedbackService.registerMetrics();
+
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(feedbackRepository.save(any(Feedback.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(generationLockRepository.tryAcquire(anyLong(), anyString(), any(), any())).thenReturn(1);
+
+        Assignment assignment = Assignment.builder().id(10L).description("Write an essay").build();
+        when(submissionService.getSubmissionWithAssignment(100L)).thenReturn(
+                Submission.builder().id(100L).assignment(assignment).fileUrl("sha256/abc").build());
+        when(fileService.isTextExtractableFile("sha256/abc")).thenReturn(true);
+        when(fileService.extractText("sha256/abc")).thenReturn("My essay");
+    }
+
+    @Test
+    void leaseIsRenewedWhileTheLlmIsGenerating() throws Exception {
+        when(llmClient.complete(any())).thenAnswer(invocation -> {
+            feedbackService.renewLeases(); // The heartbeat fires during a long completion
+            return "Good work";
+        });
+
+        Feedback feedback = feedbackService.generateFeedback(100L, teacher, Language.ENGLISH);
+
+        assertThat(feedback.getAiGenerated()).isEqualTo("Good work");
+        verify(generationLockRepository).renew(argThat((Collection<String> owners) -> owners.size() == 1), any());
+        verify(generationLockRepository).release(eq(100L), anyString());
+
+        // Released leases are not renewed any more
+        feedbackService.renewLeases();
+        verify(generationLockRepository, times(1)).renew(any(), any());
+    }
+
+    @Test
+    void requestWaitingOnAnotherGenerationGivesUpAfterTheMaxWait() throws Exception {
+        ReflectionTestUtils.setField(feedbackService, "maxWaitSeconds", 1L);
+        CountDownLatch generating = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        when(llmClient.complete(any())).thenAnswer(invocation -> {
+            generating.countDown();
+            finish.await(5, TimeUnit.SECONDS);
+            return "Good work";
+        });
+
+        CompletableFuture<Feedback> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return feedbackService.generateFeedback(100L, teacher, Language.ENGLISH);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertThat(generating.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> feedbackService.generateFeedback(100L, teacher, Language.ENGLISH))
+                .hasMessageContaining("still being generated");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(3000);
+
+        finish.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getAiGenerated()).isEqualTo("Good work");
+        verify(llmClient, times(1)).complete(any());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.newmoodle.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmCircuitBreakerTest {
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(3, Duration.ofMinutes(1));
+
+        breaker.onFailure(null);
+        breaker.onFailure(null);
+        breaker.onSuccess(); // Resets the count
+        breaker.onFailure(null);
+        breaker.onFailure(null);
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.onFailure(null);
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.remainingOpen()).isBetween(Duration.ofSeconds(50), Duration.ofMinutes(1));
+    }
+
+    @Test
+    void retryAfterLongerThanTheOpenDurationKeepsTheCircuitOpenLonger() {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(1, Duration.ofSeconds(10));
+
+        breaker.onFailure(Duration.ofMinutes(5));
+
+        assertThat(breaker.remainingOpen()).isGreaterThan(Duration.ofMinutes(4));
+    }
+
+    @Test
+    void singleProbeAfterTheOpenDurationClosesOrReopensTheCircuit() throws Exception {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(1, Duration.ofMillis(20));
+        breaker.onFailure(null);
+        Thread.sleep(50);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).as("Only one probe at a time").isFalse();
+
+        breaker.onFailure(null);
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.OPEN);
+        Thread.sleep(50);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.CLOSED);
+        assertThat(breaker.remainingOpen()).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    void probeThatTellsNothingHandsTheProbeToTheNextCaller() throws Exception {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(1, Duration.ofMillis(20));
+        breaker.onFailure(null);
+        Thread.sleep(50);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.onIgnore(); // The probe was cancelled before it reached the provider
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.HALF_OPEN);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.newmoodle.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmClientExceptionTest {
+
+    @Test
+    void transportFailuresRateLimitsAndServerErrorsAreRetryable() {
+        assertThat(exception(LlmClientException.NO_RESPONSE).isRetryable()).isTrue();
+        assertThat(exception(408).isRetryable()).isTrue();
+        assertThat(exception(429).isRetryable()).isTrue();
+        assertThat(exception(500).isRetryable()).isTrue();
+        assertThat(exception(503).isRetryable()).isTrue();
+    }
+
+    @Test
+    void rejectedRequestsAreNotRetryable() {
+        assertThat(exception(400).isRetryable()).isFalse();
+        assertThat(exception(401).isRetryable()).isFalse();
+        assertThat(exception(404).isRetryable()).isFalse();
+        assertThat(exception(422).isRetryable()).isFalse();
+    }
+
+    @Test
+    void parseRetryAfterReadsDeltaSeconds() {
+        assertThat(LlmClientException.parseRetryAfter("120")).isEqualTo(Duration.ofSeconds(120));
+        assertThat(LlmClientException.parseRetryAfter(" 5 ")).isEqualTo(Duration.ofSeconds(5));
+        assertThat(LlmClientException.parseRetryAfter("-3")).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    void parseRetryAfterReadsHttpDates() {
+        String inTwoMinutes = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(2));
+        assertThat(LlmClientException.parseRetryAfter(inTwoMinutes)).isBetween(Duration.ofSeconds(100), Duration.ofSeconds(120));
+
+        String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(2));
+        assertThat(LlmClientException.parseRetryAfter(past)).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    void parseRetryAfterIgnoresMissingAndMalformedValues() {
+        assertThat(LlmClientException.parseRetryAfter(null)).isNull();
+        assertThat(LlmClientException.parseRetryAfter("  ")).isNull();
+        assertThat(LlmClientException.parseRetryAfter("soon")).isNull();
+    }
+
+    private static LlmClientException exception(int statusCode) {
+        return new LlmClientException("HTTP " + statusCode, statusCode, null, null);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.newmoodle.service;
+
+import com.example.newmoodle.model.ObjectDeletion;
+import com.example.newmoodle.repository.ObjectDeletionRepository;
+import com.example.newmoodle.repository.StoredObjectRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ObjectDeletionWorkerTest {
+
+    private final ObjectDeletionRepository objectDeletionRepository = mock(ObjectDeletionRepository.class);
+    private final StoredObjectRepository storedObjectRepository = mock(StoredObjectRepository.class);
+    private final FileService fileService = mock(FileService.class);
+    private final ExtractedTextCache extractedTextCache = mock(ExtractedTextCache.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final ThreadPoolTaskExecutor deletionExecutor = mock(ThreadPoolTaskExecutor.class);
+    private final AtomicBoolean inTransaction = new AtomicBoolean();
+
+    private ObjectDeletionWorker worker;
+    private ObjectDeletion first;
+    private ObjectDeletion second;
+
+    @BeforeEach
+    void setUp() {
+        worker = new ObjectDeletionWorker(objectDeletionRepository, storedObjectRepository, fileService,
+                extractedTextCache, transactionTemplate, deletionExecutor);
+        ReflectionTestUtils.setField(worker, "retryBaseSeconds", 30L);
+        ReflectionTestUtils.setField(worker, "retryMaxSeconds", 3600L);
+        ReflectionTestUtils.setField(worker, "claimLeaseSeconds", 300L);
+
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            inTransaction.set(true);
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            } finally {
+                inTransaction.set(false);
+            }
+        });
+        doCallRealMethod().when(transactionTemplate).executeWithoutResult(any());
+
+        LocalDateTime due = LocalDateTime.now().minusMinutes(1);
+        first = ObjectDeletion.builder().id(1L).objectKey("sha256/aaa").attempts(0).nextAttemptAt(due).build();
+        second = ObjectDeletion.builder().id(2L).objectKey("sha256/bbb").attempts(0).nextAttemptAt(due).build();
+        when(objectDeletionRepository.lockDue(any(), anyInt())).thenReturn(List.of(first, second));
+        when(objectDeletionRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(first, second));
+    }
+
+    @Test
+    void claimIsCommittedBeforeTheBucketIsCalled() {
+        when(storedObjectRepository.findLiveKeys(List.of("sha256/aaa", "sha256/bbb"))).thenReturn(List.of("sha256/bbb"));
+        when(fileService.deleteObjects(List.of("sha256/aaa"))).thenAnswer(invocation -> {
+            assertThat(inTransaction).as("DeleteObjects must run outside the claiming transaction").isFalse();
+            // The claim moved the rows out of the other nodes' reach for the lease
+            assertThat(first.getNextAttemptAt()).isAfter(LocalDateTime.now().plusSeconds(250));
+            return Map.of();
+        });
+
+        worker.drain();
+
+        verify(storedObjectRepository).markDeleting(List.of("sha256/aaa", "sha256/bbb"));
+        verify(fileService).deleteObjects(List.of("sha256/aaa")); // sha256/bbb was referenced again
+        verify(storedObjectRepository).deleteMarked(List.of("sha256/aaa"));
+        verify(extractedTextCache).evict(List.of("sha256/aaa"));
+        verify(objectDeletionRepository).delete(first);
+        verify(objectDeletionRepository).delete(second);
+        verify(storedObjectRepository, never()).unmarkDeleting(any());
+    }
+
+    @Test
+    void failedKeysAreRetriedLaterAndHandedBackToTheReferenceCount() {
+        when(storedObjectRepository.findLiveKeys(any())).thenReturn(List.of());
+        when(fileService.deleteObjects(List.of("sha256/aaa", "sha256/bbb"))).thenReturn(Map.of("sha256/bbb", "AccessDenied"));
+
+        worker.drain();
+
+        verify(storedObjectRepository).deleteMarked(List.of("sha256/aaa"));
+        verify(extractedTextCache).evict(List.of("sha256/aaa")); // The text of sha256/bbb is still needed
+        verify(storedObjectRepository).unmarkDeleting(Set.of("sha256/bbb"));
+        verify(objectDeletionRepository).delete(first);
+        verify(objectDeletionRepository, never()).delete(second);
+        assertThat(second.getAttempts()).isEqualTo(1);
+        assertThat(second.getLastError()).isEqualTo("AccessDenied");
+        assertThat(second.getNextAttemptAt()).isBetween(LocalDateTime.now().plusSeconds(20), LocalDateTime.now().plusSeconds(31));
+    }
+
+    @Test
+    void triggersBeyondTheQueuedDrainAreDropped() {
+        doThrow(new RejectedExecutionException("queue full")).when(deletionExecutor).execute(any(Runnable.class));
+
+        assertThatCode(() -> worker.onDeletionQueued(new ObjectDeletionQueuedEvent("sha256/aaa"))).doesNotThrowAnyException();
+        verifyNoInteractions(objectDeletionRepository);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.newmoodle.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ObjectDiskCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private ObjectDiskCache cache;
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cache = newCache(10);
+    }
+
+    @Test
+    void missDownloadsOnceAndHitsAreServedFromDisk() throws IOException {
+        try (ObjectDiskCache.Entry entry = cache.get("a", "v1", 4, loader("aaaa"))) {
+            assertThat(Files.readString(entry.path())).isEqualTo("aaaa");
+        }
+        try (ObjectDiskCache.Entry entry = cache.get("a", "v1", 4, loader("aaaa"))) {
+            assertThat(ObjectDiskCache.readAllBytes(entry.path())).isEqualTo("aaaa".getBytes(StandardCharsets.UTF_8));
+        }
+        try (ObjectDiskCache.Entry entry = cache.lookup("a", "v1")) {
+            assertThat(entry).isNotNull();
+        }
+
+        assertThat(downloads).hasValue(1);
+        assertThat(cache.lookup("a", "v2")).as("Another ETag is another entry").isNull();
+        assertThat(cache.getCachedBytes()).isEqualTo(4);
+    }
+
+    @Test
+    void pinnedEntriesAreNotEvicted() throws IOException {
+        ObjectDiskCache.Entry pinned = cache.get("a", "v1", 6, loader("aaaaaa"));
+
+        // Over budget, but the only candidate is pinned
+        try (ObjectDiskCache.Entry other = cache.get("b", "v1", 6, loader("bbbbbb"))) {
+            assertThat(Files.exists(pinned.path())).isTrue();
+            assertThat(Files.exists(other.path())).isTrue();
+            assertThat(cache.getCachedBytes()).isEqualTo(12);
+        }
+        // Unpinning b evicts the least recently used entry that is no longer pinned
+        assertThat(Files.exists(pinned.path())).isTrue();
+        assertThat(cache.getCachedBytes()).isEqualTo(6);
+        assertThat(cache.lookup("b", "v1")).isNull();
+
+        pinned.close();
+        pinned.close(); // Closing twice releases one pin only
+        assertThat(Files.exists(pinned.path())).isTrue();
+    }
+
+    @Test
+    void leastRecentlyUsedUnpinnedEntryIsEvictedFirst() throws IOException {
+        cache.get("a", "v1", 4, loader("aaaa")).close();
+        cache.get("b", "v1", 4, loader("bbbb")).close();
+        cache.lookup("a", "v1").close(); // a is now more recent than b
+
+        cache.get("c", "v1", 4, loader("cccc")).close();
+
+        assertThat(cache.lookup("b", "v1")).isNull();
+        assertThat(cache.lookup("a", "v1")).isNotNull();
+        assertThat(cache.lookup("c", "v1")).isNotNull();
+    }
+
+    @Test
+    void concurrentMissesShareOneDownload() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ObjectDiskCache.ObjectLoader slow = () -> {
+            downloads.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ByteArrayInputStream("aaaa".getBytes(StandardCharsets.UTF_8));
+        };
+
+        List<CompletableFuture<String>> reads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int i = 0; i < 4; i++) {
+                reads.add(CompletableFuture.supplyAsync(() -> {
+                    try (ObjectDiskCache.Entry entry = cache.get("a", "v1", 4, slow)) {
+                        return Files.readString(entry.path());
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, executor));
+            }
+            Thread.sleep(200);
+            release.countDown();
+        }
+
+        assertThat(reads).allSatisfy(read -> assertThat(read.join()).isEqualTo("aaaa"));
+        assertThat(downloads).hasValue(1);
+    }
+
+    @Test
+    void objectsLargerThanAnEntryAreNotCached() throws IOException {
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", 3L);
+
+        assertThat(cache.get("a", "v1", 4, loader("aaaa"))).isNull();
+        assertThat(downloads).hasValue(0);
+    }
+
+    @Test
+    void missingObjectsAreReportedAndNotCached() {
+        assertThatThrownBy(() -> cache.get("a", "v1", 4, () -> null)).isInstanceOf(FileNotFoundException.class);
+        assertThat(cache.lookup("a", "v1")).isNull();
+        assertThat(cache.getCachedBytes()).isZero();
+    }
+
+    @Test
+    void entriesSurviveARestart() throws IOException {
+        cache.get("a", "v1", 4, loader("aaaa")).close();
+        Files.writeString(directory.resolve(".download-1.part"), "partial");
+
+        ObjectDiskCache restarted = newCache(10);
+
+        try (ObjectDiskCache.Entry entry = restarted.lookup("a", "v1")) {
+            assertThat(Files.readString(entry.path())).isEqualTo("aaaa");
+        }
+        assertThat(restarted.getCachedBytes()).isEqualTo(4);
+        assertThat(directory.resolve(".download-1.part")).doesNotExist();
+    }
+
+    private ObjectDiskCache newCache(long maxBytes) throws IOException {
+        ObjectDiskCache created = new ObjectDiskCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(created, "enabled", true);
+        ReflectionTestUtils.setField(created, "directory", directory.toString());
+        ReflectionTestUtils.setField(created, "maxBytes", maxBytes);
+        ReflectionTestUtils.setField(created, "maxEntryBytes", 100L);
+        created.init();
+        return created;
+    }
+
+    private ObjectDiskCache.ObjectLoader loader(String content) {
+        return () -> {
+            downloads.incrementAndGet();
+            return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.newmoodle.service.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalDiskStorageBackendTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path root;
+
+    private LocalDiskStorageBackend backend;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        backend = newBackend("secret");
+    }
+
+    @Test
+    void storedObjectsCanBeReadBack() throws IOException {
+        String eTag = backend.put("essay.pdf", CONTENT, "application/pdf");
+
+        StorageObject head = backend.head("essay.pdf");
+        assertThat(head.size()).isEqualTo(10);
+        assertThat(head.eTag()).isEqualTo(eTag);
+        assertThat(head.contentType()).isEqualTo("application/pdf");
+        try (InputStream in = backend.get("essay.pdf")) {
+            assertThat(in.readAllBytes()).isEqualTo(CONTENT);
+        }
+
+        assertThat(backend.head("missing")).isNull();
+        assertThat(backend.get("missing")).isNull();
+    }
+
+    @Test
+    void keysCannotEscapeTheRootAndSurviveListing() throws IOException {
+        List<String> keys = List.of("../../etc/passwd", "derived/sha256/abc.jpg", "a b/ü..%2F.txt", "..");
+        for (String key : keys) {
+            backend.put(key, CONTENT, null);
+            Path path = backend.pathFor(key);
+            assertThat(path).startsWith(root).isRegularFile();
+            assertThat(path.getParent().getParent().getParent()).isEqualTo(root); // <root>/ab/cd/<encoded key>
+        }
+
+        List<String> listed = new ArrayList<>();
+        backend.list(2).forEach(page -> page.forEach(object -> listed.add(object.key())));
+        assertThat(listed).containsExactlyInAnyOrderElementsOf(keys);
+    }
+
+    @Test
+    void signedTokensRoundTripAndRejectTampering() {
+        SignedUrl url = backend.downloadUrl("sha256/abc", "Эссе.pdf", "application/pdf", Duration.ofMinutes(5));
+        String token = url.url().getPath().substring(LocalDiskStorageBackend.TOKEN_PATH.length());
+
+        LocalDiskStorageBackend.Token verified = backend.verify(token);
+        assertThat(verified.mode()).isEqualTo(LocalDiskStorageBackend.TokenMode.GET);
+        assertThat(verified.key()).isEqualTo("sha256/abc");
+        assertThat(verified.fileName()).isEqualTo("Эссе.pdf");
+        assertThat(verified.contentType()).isEqualTo("application/pdf");
+
+        String payload = token.substring(0, token.indexOf('.'));
+        String signature = token.substring(token.indexOf('.'));
+        String otherPayload = backend.downloadUrl("sha256/other", null, null, Duration.ofMinutes(5)).url().getPath()
+                .substring(LocalDiskStorageBackend.TOKEN_PATH.length()).split("\\.")[0];
+        assertThatThrownBy(() -> backend.verify(otherPayload + signature)).hasMessageContaining("signature");
+        assertThatThrownBy(() -> backend.verify(payload)).hasMessageContaining("Malformed");
+        assertThatThrownBy(() -> backend.verify(payload + ".!!")).hasMessageContaining("Malformed");
+    }
+
+    @Test
+    void tokensFromAnotherSecretOrPastTheirExpiryAreRejected() throws IOException {
+        String expired = tokenOf(backend.uploadUrl("k", "text/plain", 10, Duration.ofSeconds(-5)));
+        assertThatThrownBy(() -> backend.verify(expired)).hasMessageContaining("expired");
+
+        String foreign = tokenOf(newBackend("other-secret").uploadUrl("k", "text/plain", 10, Duration.ofMinutes(5)));
+        assertThatThrownBy(() -> backend.verify(foreign)).hasMessageContaining("signature");
+
+        LocalDiskStorageBackend.Token upload = backend.verify(tokenOf(backend.uploadUrl("k", "text/plain", 10, Duration.ofMinutes(5))));
+        assertThat(upload.mode()).isEqualTo(LocalDiskStorageBackend.TokenMode.PUT);
+        assertThat(upload.contentLength()).isEqualTo(10);
+    }
+
+    @Test
+    void rangesAreServedAsRegionsOfTheFile() throws IOException {
+        backend.put("k", CONTENT, "text/plain");
+
+        assertRange("bytes=2-5", 206, "bytes 2-5/10", "2345");
+        assertRange("bytes=-3", 206, "bytes 7-9/10", "789");
+        assertRange("bytes=8-", 206, "bytes 8-9/10", "89");
+        assertRange("bytes=8-100", 206, "bytes 8-9/10", "89");
+        assertRange(null, 200, null, "0123456789");
+        assertRange("bytes=0-1,4-5", 200, null, "0123456789"); // Multi-range: whole file
+        assertRange("items=0-1", 200, null, "0123456789");
+
+        try (ObjectDownload unsatisfiable = backend.get("k", "bytes=20-", null, null)) {
+            assertThat(unsatisfiable.getStatus()).isEqualTo(416);
+            assertThat(unsatisfiable.getContentRange()).isEqualTo("bytes */10");
+            assertThat(unsatisfiable.hasBody()).isFalse();
+        }
+    }
+
+    @Test
+    void conditionalRequestsAnswerNotModified() throws IOException {
+        String eTag = backend.put("k", CONTENT, "text/plain");
+
+        assertThat(status(backend.get("k", null, eTag, null))).isEqualTo(304);
+        assertThat(status(backend.get("k", null, "\"other\", W/" + eTag, null))).isEqualTo(304);
+        assertThat(status(backend.get("k", null, "\"other\"", null))).isEqualTo(200);
+        assertThat(status(backend.get("k", null, null, Instant.now().plusSeconds(60)))).isEqualTo(304);
+        assertThat(status(backend.get("k", null, null, Instant.now().minusSeconds(3600)))).isEqualTo(200);
+        // If-None-Match wins over If-Modified-Since
+        assertThat(status(backend.get("k", null, "\"other\"", Instant.now().plusSeconds(60)))).isEqualTo(200);
+        assertThat(backend.get("missing", "bytes=0-1", null, null)).isNull();
+    }
+
+    @Test
+    void replacingAnObjectChangesItsETag() throws Exception {
+        String first = backend.put("k", CONTENT, "text/plain");
+        Thread.sleep(10);
+        String second = backend.put("k", "changed".getBytes(StandardCharsets.US_ASCII), "text/plain");
+
+        assertThat(second).isNotEqualTo(first);
+        assertThat(backend.head("k").size()).isEqualTo(7);
+    }
+
+    private void assertRange(String range, int status, String contentRange, String body) throws IOException {
+        try (ObjectDownload download = backend.get("k", range, null, null)) {
+            assertThat(download.getStatus()).as(range).isEqualTo(status);
+            assertThat(download.getContentRange()).as(range).isEqualTo(contentRange);
+            assertThat(download.getContentLength()).as(range).isEqualTo(body.length());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            download.transferTo(out);
+            assertThat(out.toString(StandardCharsets.US_ASCII)).as(range).isEqualTo(body);
+        }
+    }
+
+    private static int status(ObjectDownload download) throws IOException {
+        try (download) {
+            return download.getStatus();
+        }
+    }
+
+    private static String tokenOf(SignedUrl url) {
+        return url.url().getPath().substring(LocalDiskStorageBackend.TOKEN_PATH.length());
+    }
+
+    private LocalDiskStorageBackend newBackend(String secret) throws IOException {
+        LocalDiskStorageBackend created = new LocalDiskStorageBackend();
+        ReflectionTestUtils.setField(created, "rootDirectory", root.toString());
+        ReflectionTestUtils.setField(created, "signingSecret", secret);
+        ReflectionTestUtils.setField(created, "publicBaseUrl", "http://localhost:8080");
+        created.init();
+        return created;
+    }
+}
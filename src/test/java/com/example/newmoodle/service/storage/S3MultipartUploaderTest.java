@@ -0,0 +1,96 @@
+package com.example.newmoodle.service.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class S3MultipartUploaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final S3Client s3Client = mock(S3Client.class);
+    private final ThreadPoolTaskExecutor uploadExecutor = new ThreadPoolTaskExecutor();
+    private S3MultipartUploader uploader;
+
+    @BeforeEach
+    void setUp() {
+        uploadExecutor.setCorePoolSize(2);
+        uploadExecutor.setMaxPoolSize(2);
+        uploadExecutor.initialize();
+        uploader = new S3MultipartUploader(s3Client, uploadExecutor);
+        ReflectionTestUtils.setField(uploader, "bucketName", "bucket");
+        ReflectionTestUtils.setField(uploader, "multipartThreshold", 1L);
+        ReflectionTestUtils.setField(uploader, "partSize", 5L * 1024 * 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploadExecutor.shutdown();
+    }
+
+    @Test
+    void failedPartStopsTheOtherPartsBeforeAborting() throws Exception {
+        Path file = tempDir.resolve("large.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(12L * 1024 * 1024); // Three parts: 5 MB, 5 MB, 2 MB
+        }
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+
+        CountDownLatch slowPartStarted = new CountDownLatch(1);
+        AtomicBoolean slowPartRunning = new AtomicBoolean();
+        AtomicBoolean abortedWhilePartRunning = new AtomicBoolean();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            if (request.partNumber() == 2) {
+                slowPartStarted.await(5, TimeUnit.SECONDS);
+                throw S3Exception.builder().message("part 2 failed").statusCode(500).build();
+            }
+            // Other parts hang until interrupted, like a stalled connection
+            slowPartRunning.set(true);
+            slowPartStarted.countDown();
+            try {
+                Thread.sleep(30_000);
+                return UploadPartResponse.builder().eTag("etag").build();
+            } catch (InterruptedException e) {
+                throw AbortedException.create("interrupted");
+            } finally {
+                slowPartRunning.set(false);
+            }
+        });
+        when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class))).thenAnswer(invocation -> {
+            abortedWhilePartRunning.set(slowPartRunning.get());
+            return AbortMultipartUploadResponse.builder().build();
+        });
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> uploader.upload("key", file, "application/octet-stream"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("part 2 failed");
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        assertThat(abortedWhilePartRunning).isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(10);
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+}